@@ -0,0 +1,239 @@
+package com.parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Отдельный поток записи в журнал строк: парсер публикует готовые записи страницы в ограниченную очередь
+ * (publish блокируется, только если запись отстала на QUEUE_CAPACITY страниц) и идёт дальше,
+ * а поток копит их и пишет одной дозаписью со сбросом на диск — набралось BATCH_RECORDS записей
+ * или прошло MAX_DELAY с первой несохранённой. После записи выполняются колбэки страниц
+ * (отметки в журнале прогресса) — строго после того, как их записи на диске.
+ * При ошибке записи поток перестаёт писать, сообщает об этом и дальше только считает непринятые записи.
+ */
+public class AsyncRowWriter<T> {
+    public static final int QUEUE_CAPACITY = 16;
+    public static final int BATCH_RECORDS = 500;
+    public static final Duration MAX_DELAY = Duration.ofSeconds(2);
+
+    // Страница записей, барьер sync() или признак конца
+    private record Entry(List<List<String>> records, Runnable onSaved, CountDownLatch barrier, boolean end) {
+    }
+
+    private final RowJournal journal;
+    private final Function<T, List<String>> encode;
+    private final Consumer<String> log;
+    private final Runnable onFailure;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final AtomicInteger published = new AtomicInteger();
+    private final AtomicInteger persisted = new AtomicInteger();
+    private final AtomicInteger lost = new AtomicInteger();
+    private volatile IOException failure;
+    // Под this: после признака конца в очередь ничего не ставится, иначе put ждал бы места вечно
+    private boolean closed;
+
+    /**
+     * @param onFailure вызывается один раз при ошибке записи (парсер останавливает обход)
+     */
+    public AsyncRowWriter(RowJournal journal, Function<T, List<String>> encode, Consumer<String> log, Runnable onFailure) {
+        this.journal = journal;
+        this.encode = encode;
+        this.log = log;
+        this.onFailure = onFailure;
+        this.writer = new Thread(this::writeLoop, "row-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Path getPath() {
+        return journal.getPath();
+    }
+
+    // Записей в журнале, включая прошлые запуски
+    public int count() {
+        return journal.count();
+    }
+
+    // Новый обход: допустимо только до первой публикации
+    public void reset() throws IOException {
+        if (published.get() > 0) throw new IllegalStateException("Журнал строк уже пишется: " + getPath());
+        journal.reset();
+    }
+
+    /**
+     * Отдаёт записи потоку записи; onSaved выполнится в нём после сброса записей на диск.
+     * false — журнал уже закрыт или запись остановлена ошибкой, записи не приняты и считаются незаписанными.
+     */
+    public boolean publish(List<T> items, Runnable onSaved) {
+        if (failure != null) {
+            lost.addAndGet(items.size());
+            return false;
+        }
+        List<List<String>> records = new ArrayList<>(items.size());
+        for (T item : items) {
+            records.add(encode.apply(item));
+        }
+        synchronized (this) {
+            if (!closed) {
+                published.addAndGet(records.size());
+                put(new Entry(records, onSaved, null, false));
+                return true;
+            }
+        }
+        lost.addAndGet(records.size());
+        log.accept("⚠️ Журнал строк " + getPath().getFileName() + " уже закрыт, не записано: " + records.size());
+        return false;
+    }
+
+    /**
+     * Ждёт, пока всё опубликованное до вызова записано и колбэки выполнены.
+     */
+    public void sync() {
+        CountDownLatch barrier = new CountDownLatch(1);
+        synchronized (this) {
+            // после закрытия всё уже записано
+            if (closed) return;
+            put(new Entry(null, null, barrier, false));
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                barrier.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Дописывает всё из очереди (и после отмены — собранное сохраняется), закрывает журнал
+     * и возвращает итог для журнала событий.
+     */
+    public String close() throws IOException {
+        synchronized (this) {
+            if (closed) return null;
+            closed = true;
+            put(new Entry(null, null, null, true));
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        journal.close();
+
+        String report = "💾 Журнал строк " + getPath().getFileName() + ": записано " + persisted.get();
+        if (lost.get() > 0) {
+            report += ", не записано " + lost.get();
+        }
+        if (failure != null) {
+            report += " (ошибка записи: " + failure.getMessage() + ")";
+        }
+        return report;
+    }
+
+    // Очередь ограничена, но поток записи всегда её разбирает — ждём места и при прерывании
+    private void put(Entry entry) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(entry);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void writeLoop() {
+        List<Entry> pending = new ArrayList<>();
+        int pendingRecords = 0;
+        long deadline = 0;
+        while (true) {
+            Entry entry;
+            try {
+                entry = pending.isEmpty() ? queue.take()
+                        : queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // поток записи не прерывают: закрытие идёт через признак конца
+                continue;
+            }
+            if (entry == null) {
+                flush(pending);
+                pendingRecords = 0;
+                continue;
+            }
+            if (entry.records() != null) {
+                if (pending.isEmpty()) {
+                    deadline = System.nanoTime() + MAX_DELAY.toNanos();
+                }
+                pending.add(entry);
+                pendingRecords += entry.records().size();
+            }
+            if (pendingRecords >= BATCH_RECORDS || entry.barrier() != null || entry.end()) {
+                flush(pending);
+                pendingRecords = 0;
+            }
+            if (entry.barrier() != null) {
+                entry.barrier().countDown();
+            }
+            if (entry.end()) {
+                return;
+            }
+        }
+    }
+
+    // Одна дозапись со сбросом на диск на всю пачку, затем колбэки страниц по порядку
+    private void flush(List<Entry> pending) {
+        if (pending.isEmpty()) return;
+        List<List<String>> records = new ArrayList<>();
+        for (Entry entry : pending) {
+            records.addAll(entry.records());
+        }
+        if (failure == null) {
+            try {
+                journal.append(records);
+                persisted.addAndGet(records.size());
+                log.accept("💾 Промежуточное сохранение: " + records.size() + " записей, всего в журнале строк: " + journal.count());
+                for (Entry entry : pending) {
+                    runCallback(entry.onSaved());
+                }
+            } catch (IOException e) {
+                failure = e;
+                lost.addAndGet(records.size());
+                log.accept("❌ Ошибка записи журнала строк " + getPath().getFileName() + ": " + e.getMessage());
+                onFailure.run();
+            }
+        } else {
+            lost.addAndGet(records.size());
+        }
+        pending.clear();
+    }
+
+    private void runCallback(Runnable onSaved) {
+        if (onSaved == null) return;
+        try {
+            onSaved.run();
+        } catch (RuntimeException e) {
+            log.accept("⚠️ Ошибка после записи страницы: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.parser;
+
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonOutput;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Снимки карточек организаций между запусками: хэш полей из списка (то, что даёт parseCompanyCard)
+ * и детальные поля, загруженные с профиля. Если карточка в списке не изменилась с прошлого запуска,
+ * профиль заново не открываем, а берём детали из снимка.
+ * Хранится по строке JSON на организацию (дозапись, при чтении побеждает последняя строка),
+ * при заметном разрастании файл переписывается.
+ */
+public class CardSnapshots {
+    private static final Object LOCK = new Object();
+    private static final String EXTENSION = ".cards.jsonl";
+    // Переписываем файл, если строк больше, чем организаций, в столько раз
+    private static final int COMPACT_RATIO = 2;
+
+    private record Snapshot(String hash, Map<String, String> details) {
+    }
+
+    private final Path path;
+    private final Json json = new Json();
+    private final Map<String, Snapshot> byUrl = new ConcurrentHashMap<>();
+
+    private CardSnapshots(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Снимки региона (без года: сравниваем с прошлогодним обходом), например "Управляющие компании Москва".
+     */
+    public static CardSnapshots load(String baseName) throws IOException {
+        CardSnapshots snapshots = new CardSnapshots(Path.of(baseName + EXTENSION));
+        snapshots.read();
+        return snapshots;
+    }
+
+    public int size() {
+        return byUrl.size();
+    }
+
+    private void read() throws IOException {
+        synchronized (LOCK) {
+            if (!Files.exists(path)) return;
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.isBlank()) continue;
+                try {
+                    Map<String, Object> record = json.toType(line, Json.MAP_TYPE);
+                    Map<String, String> details = new LinkedHashMap<>();
+                    Map<?, ?> stored = JsonValues.map(record, "details");
+                    for (Map.Entry<?, ?> e : stored.entrySet()) {
+                        if (e.getValue() != null) details.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+                    }
+                    byUrl.put(JsonValues.str(record, "url"), new Snapshot(JsonValues.str(record, "hash"), details));
+                } catch (RuntimeException ignore) {
+                    // оборванная строка после аварийного завершения
+                }
+            }
+            if (lines.size() > byUrl.size() * COMPACT_RATIO) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Карточка не изменилась — копирует в неё детали из снимка и возвращает true.
+     */
+    public boolean applyIfUnchanged(Company company) {
+        String url = company.getProfileUrl();
+        Snapshot snapshot = url != null ? byUrl.get(url) : null;
+        if (snapshot == null || !snapshot.hash().equals(hash(company)) || !hasDetails(snapshot.details())) {
+            return false;
+        }
+        applyDetails(company, snapshot.details());
+        return true;
+    }
+
+    // Запоминает карточку после успешной загрузки профиля
+    public void record(Company company) throws IOException {
+        String url = company.getProfileUrl();
+        if (url == null || url.isEmpty()) return;
+        Snapshot snapshot = new Snapshot(hash(company), details(company));
+        byUrl.put(url, snapshot);
+        String line = toLine(url, snapshot) + System.lineSeparator();
+        synchronized (LOCK) {
+            Files.writeString(path, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        }
+    }
+
+    // Хэш полей карточки из списка; детальные поля в него не входят
+    static String hash(Company company) {
+        String card = String.join("\u001f",
+                nonNull(company.getName()), nonNull(company.getType()), nonNull(company.getAddress()),
+                nonNull(company.getWebsite()), nonNull(company.getPhone()), nonNull(company.getProfileUrl()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(card.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Детальные поля карточки (с профиля) — общие для снимков и кэша профилей
+    static Map<String, String> details(Company company) {
+        Map<String, String> details = new LinkedHashMap<>();
+        details.put("email", company.getEmail());
+        details.put("receptionInfo", company.getReceptionInfo());
+        details.put("receptionHours", company.getReceptionHours());
+        details.put("breakTimes", company.getBreakTimes());
+        details.put("notes", company.getNotes());
+        details.put("directorInfo", company.getDirectorInfo());
+        return details;
+    }
+
+    // Снимок без единого детального поля (пустой профиль прежних версий) не переиспользуем
+    static boolean hasDetails(Map<String, String> details) {
+        for (String value : details.values()) {
+            if (value != null && !value.isBlank()) return true;
+        }
+        return false;
+    }
+
+    static void applyDetails(Company company, Map<String, String> details) {
+        company.setEmail(details.get("email"));
+        company.setReceptionInfo(details.get("receptionInfo"));
+        company.setReceptionHours(details.get("receptionHours"));
+        company.setBreakTimes(details.get("breakTimes"));
+        company.setNotes(details.get("notes"));
+        company.setDirectorInfo(details.get("directorInfo"));
+    }
+
+    private void compact() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Snapshot> e : byUrl.entrySet()) {
+            content.append(toLine(e.getKey(), e.getValue())).append(System.lineSeparator());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String toLine(String url, Snapshot snapshot) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("url", url);
+        record.put("hash", snapshot.hash());
+        record.put("details", snapshot.details());
+        StringBuilder line = new StringBuilder();
+        try (JsonOutput output = json.newOutput(line)) {
+            output.setPrettyPrint(false).write(record);
+        }
+        return line.toString();
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
@@ -0,0 +1,139 @@
+package com.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Журнал прогресса запуска рядом с выходным файлом (то же имя + ".journal"): только дозапись строк,
+ * каждая запись сбрасывается на диск (FileChannel.force), поэтому переживает падение, отмену и перезагрузку.
+ * <pre>
+ * P &lt;номер&gt;   страница полностью сохранена
+ * C &lt;ссылка&gt;   карточка организации загружена и сохранена
+ * F            запуск дошёл до конца — следующий начнётся заново
+ * </pre>
+ * Оборванная последняя строка (без перевода строки) при чтении отбрасывается.
+ */
+public class CheckpointJournal implements AutoCloseable {
+    // Сессии-шарды одного региона пишут в один журнал
+    private static final Object LOCK = new Object();
+    private static final String EXTENSION = ".journal";
+
+    private final Path path;
+    private final Set<Integer> pages = ConcurrentHashMap.newKeySet();
+    private final Set<String> companies = ConcurrentHashMap.newKeySet();
+    private final FileChannel channel;
+
+    private CheckpointJournal(Path path) throws IOException {
+        this.path = path;
+        synchronized (LOCK) {
+            if (Files.exists(path)) {
+                load(Files.readString(path, StandardCharsets.UTF_8));
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Журнал для выходного файла без расширения (например "Управляющие компании Москва 2024").
+     * Журнал завершённого запуска очищается.
+     */
+    public static CheckpointJournal open(String outputBaseName) throws IOException {
+        return new CheckpointJournal(Path.of(outputBaseName + EXTENSION));
+    }
+
+    private void load(String content) throws IOException {
+        int end = content.lastIndexOf('\n');
+        List<String> lines = end < 0 ? List.of() : content.substring(0, end).lines().toList();
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).trim().equals("F")) {
+            Files.writeString(path, "", StandardCharsets.UTF_8);
+            return;
+        }
+        for (String line : lines) {
+            if (line.startsWith("P ")) {
+                try {
+                    pages.add(Integer.parseInt(line.substring(2).trim()));
+                } catch (NumberFormatException ignore) {
+                    // повреждённая строка
+                }
+            } else if (line.startsWith("C ")) {
+                companies.add(line.substring(2).trim());
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean hasProgress() {
+        return !pages.isEmpty() || !companies.isEmpty();
+    }
+
+    public int completedPages() {
+        return pages.size();
+    }
+
+    public int completedCompanies() {
+        return companies.size();
+    }
+
+    // Первая несохранённая страница, начиная с from
+    public int resumePage(int from) {
+        int page = from;
+        while (pages.contains(page)) {
+            page++;
+        }
+        return page;
+    }
+
+    public boolean isCompanyDone(String profileUrl) {
+        return profileUrl != null && companies.contains(profileUrl);
+    }
+
+    public void pageDone(int page) throws IOException {
+        if (pages.add(page)) {
+            append("P " + page + "\n");
+        }
+    }
+
+    // Пачка карточек — одна запись и один сброс на диск
+    public void companiesDone(Collection<String> profileUrls) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (String url : profileUrls) {
+            if (url != null && !url.isEmpty() && companies.add(url)) {
+                records.append("C ").append(url).append('\n');
+            }
+        }
+        if (records.length() > 0) {
+            append(records.toString());
+        }
+    }
+
+    public void finish() throws IOException {
+        append("F\n");
+    }
+
+    private void append(String records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        synchronized (LOCK) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
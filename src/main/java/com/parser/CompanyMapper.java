@@ -0,0 +1,231 @@
+package com.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполнение {@link Company} из структурированных данных: JSON бэкенда реестра
+ * и результатов пакетного чтения карточек страницы через executeScript.
+ * Формат полей совпадает с тем, что собирает DOM-парсер: роли через перевод строки,
+ * часы приёма как "День: 09:00—18:00" по строке на день, руководитель как "ФИО\nДолжность".
+ */
+final class CompanyMapper {
+    static final String[] DAYS = {
+            "Понедельник", "Вторник", "Среда", "Четверг", "Пятница", "Суббота", "Воскресенье"
+    };
+
+    private CompanyMapper() {
+    }
+
+    static String guid(Map<?, ?> item) {
+        return JsonValues.str(item, "guid", "organizationGuid", "orgRootEntityGuid", "rootEntityGuid");
+    }
+
+    // Карточка из ответа поиска по реестру поставщиков информации
+    static Company fromSearchItem(Map<?, ?> item, String profileUrl) {
+        Company company = new Company();
+        company.setName(JsonValues.str(item, "fullName", "shortName", "name", "organization.fullName"));
+        company.setProfileUrl(profileUrl);
+
+        List<String> roles = new ArrayList<>();
+        for (Object role : JsonValues.list(item, "nsiOrganizationRoles", "organizationRoles", "roles")) {
+            String val = JsonValues.text(role instanceof Map ? JsonValues.path(role, "organizationRole") : role);
+            if (val.isEmpty()) val = JsonValues.text(role);
+            val = val.replaceAll("\\s*;\\s*$", "");
+            if (!val.isEmpty()) roles.add(val);
+        }
+        if (!roles.isEmpty()) company.setType(String.join(System.lineSeparator(), roles));
+
+        String address = JsonValues.str(item, "factualAddress", "factAddress", "actualAddress", "address");
+        if (!address.isEmpty()) company.setAddress(address);
+        String phone = JsonValues.str(item, "phone", "phones", "contactPhone");
+        if (!phone.isEmpty()) company.setPhone(phone);
+        String site = JsonValues.str(item, "url", "webSite", "website", "site");
+        if (!site.isEmpty() && !site.contains("dom.gosuslugi.ru")) company.setWebsite(site);
+        return company;
+    }
+
+    /**
+     * Карточка списка из результата пакетного скрипта: name, profileUrl, roles, siteText, siteHref
+     * и rows — пары [подпись, значение] из .register-card__table. Правила те же, что в parseCompanyCard.
+     * Возвращает null для карточки без названия и ссылки.
+     */
+    static Company fromCardMap(Map<?, ?> card) {
+        Company company = new Company();
+        company.setName(JsonValues.str(card, "name"));
+        company.setProfileUrl(JsonValues.str(card, "profileUrl"));
+
+        List<String> roles = new ArrayList<>();
+        for (Object role : JsonValues.list(card, "roles")) {
+            String val = JsonValues.text(role).replaceAll("\\s*;\\s*$", "");
+            if (!val.isEmpty()) roles.add(val);
+        }
+        if (!roles.isEmpty()) company.setType(String.join(System.lineSeparator(), roles));
+
+        String siteHref = JsonValues.str(card, "siteHref");
+        String siteText = JsonValues.str(card, "siteText");
+        // ссылку на сам dom.gosuslugi сайтом не считаем
+        if (!siteHref.isEmpty() && !siteHref.contains("dom.gosuslugi.ru")) {
+            company.setWebsite(!siteText.isEmpty() ? siteText : siteHref);
+        }
+
+        for (Object row : JsonValues.list(card, "rows")) {
+            if (!(row instanceof List) || ((List<?>) row).size() < 2) continue;
+            String labelText = JsonValues.text(((List<?>) row).get(0));
+            String valueText = JsonValues.text(((List<?>) row).get(1));
+
+            if ("Фактический адрес:".equals(labelText)) {
+                company.setAddress(valueText);
+            } else if ("Контактный телефон:".equals(labelText)) {
+                company.setPhone(valueText);
+            } else if ("Сайт в сети Интернет:".equals(labelText) && company.getWebsite() == null) {
+                company.setWebsite(valueText);
+            }
+        }
+
+        if (company.getName().isBlank() && company.getProfileUrl().isBlank()) {
+            return null;
+        }
+        return company;
+    }
+
+    // Профиль дал хоть одно детальное поле — только такие карточки считаются загруженными (снимки, кэш)
+    static boolean hasDetails(Company company) {
+        for (String value : new String[]{company.getEmail(), company.getReceptionInfo(), company.getReceptionHours(),
+                company.getNotes(), company.getDirectorInfo()}) {
+            if (value != null && !value.isBlank()) return true;
+        }
+        return false;
+    }
+
+    // Детальные поля из ответа карточки организации
+    static void applyProfile(Company company, Object profile) {
+        String email = JsonValues.str(profile, "orgEmail", "email", "organization.orgEmail");
+        if (!email.isEmpty()) company.setEmail(email);
+
+        Map<?, ?> chief = JsonValues.map(profile, "chief", "head", "director", "organizationChief");
+        String fio = JsonValues.str(chief, "fio");
+        if (fio.isEmpty()) {
+            fio = String.join(" ", nonEmpty(JsonValues.str(chief, "lastName"),
+                    JsonValues.str(chief, "firstName"), JsonValues.str(chief, "middleName")));
+        }
+        String position = JsonValues.str(chief, "position");
+        String director = String.join("\n", nonEmpty(fio, position));
+        if (!director.isEmpty()) company.setDirectorInfo(director);
+
+        Map<?, ?> reception = JsonValues.map(profile, "citizenReception", "citizenReceptionInfo", "reception");
+        List<String> phones = new ArrayList<>();
+        for (Object p : JsonValues.list(reception, "phones", "phone")) {
+            String val = JsonValues.text(p);
+            if (!val.isEmpty()) phones.add(val);
+        }
+        String receptionInfo = String.join("\n", nonEmpty(
+                JsonValues.str(reception, "employeePosition"),
+                JsonValues.str(reception, "address", "receptionAddress"),
+                String.join(", ", phones)));
+        if (!receptionInfo.isEmpty()) company.setReceptionInfo(receptionInfo);
+
+        StringBuilder hours = new StringBuilder();
+        StringBuilder breaks = new StringBuilder();
+        StringBuilder staffNotes = new StringBuilder();
+        for (Object row : JsonValues.list(reception, "openingHours", "hours")) {
+            String day = dayName(JsonValues.path(row, "dayOfWeek") != null ? JsonValues.path(row, "dayOfWeek") : JsonValues.path(row, "day"));
+            String work = interval(JsonValues.str(row, "openHours.beginDate"), JsonValues.str(row, "openHours.endDate"));
+            if (day.isEmpty() || work.isEmpty()) continue;
+            appendLine(hours, day + ": " + work);
+            String br = interval(JsonValues.str(row, "breakHours.beginDate"), JsonValues.str(row, "breakHours.endDate"));
+            if (!br.isEmpty()) appendLine(breaks, day + ": " + br);
+            appendLine(staffNotes, JsonValues.str(row, "comment"));
+        }
+        if (hours.length() > 0) {
+            company.setReceptionHours(hours.toString());
+            company.setBreakTimes(breaks.toString());
+        }
+
+        String notes = String.join("\n", nonEmpty(
+                JsonValues.str(profile, "note", "notes"),
+                JsonValues.str(profile, "additionalInfo"),
+                JsonValues.str(profile, "specialConditions"),
+                JsonValues.str(profile, "comment"),
+                staffNotes.toString()));
+        if (!notes.isEmpty()) company.setNotes(notes);
+    }
+
+    /**
+     * Детальные поля из результата пакетного скрипта карточки организации
+     * (reception, hours, fio, position, email, notes). Порядок и правила как в parseAdditionalInfo:
+     * комментарии из часов приёма идут в примечание, но найденные примечания их заменяют.
+     */
+    static void applyDetailBlocks(Company company, Map<?, ?> blocks) {
+        Map<?, ?> reception = JsonValues.map(blocks, "reception");
+        if (!reception.isEmpty()) {
+            List<String> phones = new ArrayList<>();
+            for (Object p : JsonValues.list(reception, "phones")) {
+                String val = JsonValues.text(p);
+                if (!val.isEmpty()) phones.add(val);
+            }
+            String receptionInfo = String.join("\n", nonEmpty(
+                    JsonValues.str(reception, "person"),
+                    JsonValues.str(reception, "address"),
+                    String.join(", ", phones)));
+            if (!receptionInfo.isEmpty()) company.setReceptionInfo(receptionInfo);
+        }
+
+        StringBuilder hours = new StringBuilder();
+        StringBuilder breaks = new StringBuilder();
+        StringBuilder staffNotes = new StringBuilder();
+        for (Object row : JsonValues.list(blocks, "hours")) {
+            String day = JsonValues.str(row, "day");
+            String work = interval(JsonValues.str(row, "begin"), JsonValues.str(row, "end"));
+            if (work.isEmpty()) continue;
+            appendLine(hours, day + ": " + work);
+            String br = interval(JsonValues.str(row, "breakBegin"), JsonValues.str(row, "breakEnd"));
+            if (!br.isEmpty()) appendLine(breaks, day + ": " + br);
+            appendLine(staffNotes, JsonValues.str(row, "comment"));
+        }
+        if (hours.length() > 0) {
+            company.setReceptionHours(hours.toString());
+            company.setBreakTimes(breaks.toString());
+        }
+        if (staffNotes.length() > 0) {
+            String existing = company.getNotes() != null ? company.getNotes() : "";
+            company.setNotes((existing.isEmpty() ? "" : (existing + "\n")) + staffNotes);
+        }
+
+        String director = String.join("\n", nonEmpty(JsonValues.str(blocks, "fio"), JsonValues.str(blocks, "position")));
+        if (!director.isEmpty()) company.setDirectorInfo(director);
+
+        String email = JsonValues.str(blocks, "email");
+        if (!email.isEmpty()) company.setEmail(email);
+
+        String notes = String.join("\n", nonEmpty(JsonValues.list(blocks, "notes").stream()
+                .map(JsonValues::text).toArray(String[]::new)));
+        if (!notes.isEmpty()) company.setNotes(notes);
+    }
+
+    // День недели: номер (1 — понедельник) или уже готовое название
+    static String dayName(Object day) {
+        String s = JsonValues.text(day);
+        if (s.matches("[1-7]")) return DAYS[Integer.parseInt(s) - 1];
+        return s;
+    }
+
+    private static String interval(String begin, String end) {
+        return (!begin.isEmpty() && !end.isEmpty()) ? (begin + "—" + end) : "";
+    }
+
+    private static void appendLine(StringBuilder sb, String line) {
+        if (line == null || line.trim().isEmpty()) return;
+        if (sb.length() > 0) sb.append("\n");
+        sb.append(line.trim());
+    }
+
+    private static List<String> nonEmpty(String... values) {
+        List<String> result = new ArrayList<>();
+        for (String v : values) {
+            if (v != null && !v.trim().isEmpty()) result.add(v.trim());
+        }
+        return result;
+    }
+}
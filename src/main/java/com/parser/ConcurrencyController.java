@@ -0,0 +1,95 @@
+package com.parser;
+
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * AIMD-регулятор числа потоков карточек. После каждых window карточек без ошибок и со стабильной
+ * задержкой (не выше базовой * LATENCY_TOLERANCE) лимит растёт на 1; при ошибке или таймауте
+ * лимит сразу делится пополам, и до конца следующего окна новых снижений нет.
+ * Верхняя граница — ceiling (спиннер в GUI), нижняя — 1.
+ * Базовая задержка сразу следует за снижением и медленно (на BASELINE_DRIFT) — за ростом.
+ */
+public class ConcurrencyController {
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double BACKOFF = 0.5;
+    private static final double BASELINE_DRIFT = 0.1;
+    private static final int MIN_WINDOW = 5;
+
+    public interface Listener {
+        void onChange(int limit, int ceiling, String reason);
+    }
+
+    private final IntSupplier ceiling;
+    private final Listener listener;
+
+    private int limit;
+    private double baselineMs;
+    private long windowLatencyMs;
+    private int windowSamples;
+    private int windowErrors;
+    // Сколько концов окна осталось до новых снижений: текущее окно, в котором было снижение, и следующее
+    private int cooldownWindows;
+
+    public ConcurrencyController(int initial, IntSupplier ceiling, Listener listener) {
+        this.ceiling = ceiling;
+        this.listener = listener;
+        this.limit = Math.max(1, initial);
+    }
+
+    // Текущий лимит с учётом границы, которую могли уменьшить на ходу
+    public synchronized int getLimit() {
+        return Math.max(1, Math.min(limit, ceiling.getAsInt()));
+    }
+
+    /**
+     * Итог одной карточки: время от выдачи браузера до возврата и была ли ошибка (включая таймаут).
+     */
+    public void record(long latencyMs, boolean success) {
+        String reason = null;
+        int before;
+        int after;
+        int max;
+        synchronized (this) {
+            max = Math.max(1, ceiling.getAsInt());
+            limit = Math.min(limit, max);
+            before = limit;
+
+            if (!success) {
+                windowErrors++;
+                if (cooldownWindows == 0 && limit > 1) {
+                    limit = Math.max(1, (int) (limit * BACKOFF));
+                    cooldownWindows = 2;
+                    reason = "ошибка или таймаут карточки";
+                }
+            } else {
+                windowLatencyMs += latencyMs;
+                windowSamples++;
+            }
+
+            // Окно — не меньше MIN_WINDOW карточек и не меньше текущего лимита
+            if (windowSamples + windowErrors >= Math.max(MIN_WINDOW, limit)) {
+                double avg = windowSamples > 0 ? (double) windowLatencyMs / windowSamples : 0;
+                if (windowSamples > 0) {
+                    baselineMs = baselineMs == 0 || avg < baselineMs ? avg : baselineMs + (avg - baselineMs) * BASELINE_DRIFT;
+                }
+                if (windowErrors == 0 && cooldownWindows == 0 && avg <= baselineMs * LATENCY_TOLERANCE && limit < max) {
+                    limit++;
+                    reason = "задержка стабильна: " + seconds(avg) + " (база " + seconds(baselineMs) + ")";
+                }
+                windowLatencyMs = 0;
+                windowSamples = 0;
+                windowErrors = 0;
+                if (cooldownWindows > 0) cooldownWindows--;
+            }
+            after = limit;
+        }
+        if (reason != null && after != before && listener != null) {
+            listener.onChange(after, max, reason);
+        }
+    }
+
+    private static String seconds(double ms) {
+        return String.format(Locale.ROOT, "%.1f с", ms / 1000.0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.parser;
+
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonOutput;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Файл карточек, которые не удалось загрузить и после повторов: по строке JSON на карточку
+ * (ссылка на профиль, регион, класс ошибки, число попыток и основные данные из списка,
+ * чтобы повтор обновил строку в Excel, не затирая их). Файл общий для всех сессий и регионов.
+ * Режим "только повтор" читает его, снова не удавшееся дописывает, а восстановленное убирает по ссылкам.
+ */
+public class DeadLetterFile {
+    // Сессии и регионы пишут в один файл из разных потоков
+    private static final Object LOCK = new Object();
+
+    public record Entry(String region, DetailFailure failure, int attempts, Company company) {
+    }
+
+    private final Path path;
+    private final Json json = new Json();
+
+    public DeadLetterFile(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void append(Entry entry) throws IOException {
+        String line = toLine(entry) + System.lineSeparator();
+        synchronized (LOCK) {
+            Files.writeString(path, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        }
+    }
+
+    // Все записи файла; для повторяющейся ссылки остаётся последняя
+    public List<Entry> readAll() throws IOException {
+        synchronized (LOCK) {
+            if (!Files.exists(path)) {
+                return new ArrayList<>();
+            }
+            Map<String, Entry> byUrl = new LinkedHashMap<>();
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) continue;
+                try {
+                    Entry entry = fromLine(line);
+                    byUrl.remove(entry.company().getProfileUrl());
+                    byUrl.put(entry.company().getProfileUrl(), entry);
+                } catch (RuntimeException ignore) {
+                    // повреждённую строку (например, оборванную при аварийном завершении) пропускаем
+                }
+            }
+            return new ArrayList<>(byUrl.values());
+        }
+    }
+
+    // Убирает записи с данными ссылками; записи, дописанные другими потоками, сохраняются
+    public void removeAll(Set<String> profileUrls) throws IOException {
+        if (profileUrls.isEmpty()) return;
+        synchronized (LOCK) {
+            List<Entry> kept = new ArrayList<>();
+            for (Entry entry : readAll()) {
+                if (!profileUrls.contains(entry.company().getProfileUrl())) {
+                    kept.add(entry);
+                }
+            }
+            rewrite(kept);
+        }
+    }
+
+    // Заменяет содержимое файла через временный файл
+    public void rewrite(List<Entry> entries) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Entry entry : entries) {
+            content.append(toLine(entry)).append(System.lineSeparator());
+        }
+        synchronized (LOCK) {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String toLine(Entry entry) {
+        Company company = entry.company();
+        Map<String, Object> basic = new LinkedHashMap<>();
+        basic.put("name", company.getName());
+        basic.put("type", company.getType());
+        basic.put("address", company.getAddress());
+        basic.put("website", company.getWebsite());
+        basic.put("phone", company.getPhone());
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("profileUrl", company.getProfileUrl());
+        record.put("region", entry.region());
+        record.put("failure", entry.failure().name());
+        record.put("attempts", entry.attempts());
+        record.put("company", basic);
+
+        StringBuilder line = new StringBuilder();
+        try (JsonOutput output = json.newOutput(line)) {
+            output.setPrettyPrint(false).write(record);
+        }
+        return line.toString();
+    }
+
+    private Entry fromLine(String line) {
+        Map<String, Object> record = json.toType(line, Json.MAP_TYPE);
+        Map<?, ?> basic = record.get("company") instanceof Map ? (Map<?, ?>) record.get("company") : Map.of();
+
+        Company company = new Company();
+        company.setProfileUrl(JsonValues.str(record, "profileUrl"));
+        company.setName(nullIfEmpty(JsonValues.str(basic, "name")));
+        company.setType(nullIfEmpty(JsonValues.str(basic, "type")));
+        company.setAddress(nullIfEmpty(JsonValues.str(basic, "address")));
+        company.setWebsite(nullIfEmpty(JsonValues.str(basic, "website")));
+        company.setPhone(nullIfEmpty(JsonValues.str(basic, "phone")));
+
+        DetailFailure failure;
+        try {
+            failure = DetailFailure.valueOf(JsonValues.str(record, "failure"));
+        } catch (IllegalArgumentException e) {
+            failure = DetailFailure.OTHER;
+        }
+        return new Entry(JsonValues.str(record, "region"), failure, (int) JsonValues.number(record, "attempts"), company);
+    }
+
+    private static String nullIfEmpty(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,142 @@
+package com.parser;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Исполнитель парсинга карточек на весь запуск: потоки создаются один раз, а не на каждую страницу.
+ * Параллельность ограничена семафором, число разрешений которого совпадает с размером пула браузеров
+ * {@link DetailWorkerPool}; целевое значение читается из target перед каждой задачей,
+ * так что его можно менять на ходу (регулятор {@link ConcurrencyController}). Завершение — через CompletableFuture.
+ */
+public class DetailExecutor implements AutoCloseable {
+    public static final int MAX_CONCURRENCY = 16;
+    // Шаг проверки отмены во время паузы перед повтором
+    private static final long BACKOFF_POLL_MS = 200;
+
+    private final DetailWorkerPool pool;
+    private final IntSupplier target;
+    private final ResizableSemaphore permits = new ResizableSemaphore();
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads;
+    private int limit;
+
+    public DetailExecutor(DetailWorkerPool pool, IntSupplier target) {
+        this.pool = pool;
+        this.target = target;
+        AtomicInteger threadId = new AtomicInteger();
+        // Потоки ждут на семафоре, поэтому их число ограничено очередью задач, а не браузерами
+        this.threads = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "detail-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        adjust();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Ставит задачу в очередь. Отмена возвращённого future прерывает поток задачи.
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        inFlight.add(result);
+        Future<?> running = threads.submit(() -> {
+            boolean acquired = false;
+            try {
+                adjust();
+                permits.acquire();
+                acquired = true;
+                task.run();
+                result.complete(null);
+            } catch (InterruptedException e) {
+                result.cancel(false);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                if (acquired) {
+                    permits.release();
+                    adjust();
+                }
+            }
+        });
+        result.whenComplete((ignored, error) -> {
+            inFlight.remove(result);
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Пауза перед повтором внутри задачи: на время ожидания разрешение отдаётся другим задачам,
+     * чтобы браузер не простаивал. Пауза прерывается, как только cancelled вернёт true,
+     * иначе отмена ждала бы до конца самой длинной паузы. Вызывать только из задачи этого исполнителя.
+     */
+    public void backoff(Duration delay, BooleanSupplier cancelled) throws InterruptedException {
+        permits.release();
+        try {
+            pause(delay, cancelled);
+        } finally {
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    // Пауза, которая заканчивается раньше, как только cancelled вернёт true (и вне исполнителя — HTTP-движок)
+    public static void pause(Duration delay, BooleanSupplier cancelled) throws InterruptedException {
+        long deadline = System.nanoTime() + delay.toNanos();
+        long left;
+        while (!cancelled.getAsBoolean() && (left = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(left, TimeUnit.MILLISECONDS.toNanos(BACKOFF_POLL_MS)));
+        }
+    }
+
+    // Приводим число разрешений и размер пула браузеров к текущему целевому значению
+    private synchronized void adjust() {
+        int wanted = Math.max(1, Math.min(MAX_CONCURRENCY, target.getAsInt()));
+        if (wanted == limit) return;
+        if (wanted > limit) {
+            permits.release(wanted - limit);
+        } else {
+            permits.reducePermits(limit - wanted);
+        }
+        pool.setSize(wanted);
+        limit = wanted;
+    }
+
+    @Override
+    public void close() {
+        for (CompletableFuture<Void> future : inFlight) {
+            future.cancel(true);
+        }
+        threads.shutdownNow();
+    }
+
+    // Семафор с возможностью уменьшить число разрешений, не дожидаясь их возврата
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore() {
+            super(0);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.parser;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.net.http.HttpTimeoutException;
+
+/**
+ * Класс ошибки при загрузке карточки организации. От него зависит, повторять ли карточку:
+ * таймауты, устаревшие элементы и сбои навигации обычно проходят со второй попытки,
+ * а отсутствующий на отрисованной странице блок сразу уходит в файл ошибок.
+ */
+public enum DetailFailure {
+    TIMEOUT("таймаут", true),
+    STALE_ELEMENT("устаревший элемент", true),
+    NAVIGATION("ошибка навигации", true),
+    MISSING_BLOCK("нет блока на странице", false),
+    OTHER("прочая ошибка", true);
+
+    private final String title;
+    private final boolean retryable;
+
+    DetailFailure(String title, boolean retryable) {
+        this.title = title;
+        this.retryable = retryable;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public static DetailFailure classify(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof TimeoutException || e instanceof ScriptTimeoutException
+                    || e instanceof java.util.concurrent.TimeoutException || e instanceof HttpTimeoutException) {
+                return TIMEOUT;
+            }
+            if (e instanceof StaleElementReferenceException) {
+                return STALE_ELEMENT;
+            }
+            // NoSuchWindowException — тоже NotFoundException, поэтому проверяем до NoSuchElementException
+            if (e instanceof NoSuchWindowException || e instanceof NoSuchSessionException
+                    || e instanceof UnreachableBrowserException
+                    || (e.getMessage() != null && e.getMessage().contains("net::ERR_"))) {
+                return NAVIGATION;
+            }
+            if (e instanceof NoSuchElementException) {
+                return MISSING_BLOCK;
+            }
+        }
+        return OTHER;
+    }
+}
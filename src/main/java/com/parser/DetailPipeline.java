@@ -0,0 +1,158 @@
+package com.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер "список → карточки → сохранение" вместо барьера на каждой странице.
+ * Списочная стадия кладёт заготовки в ограниченную очередь (put блокируется, если карточки не успевают),
+ * диспетчер отдаёт их в {@link DetailExecutor}, не держа в работе больше задач, чем у исполнителя разрешений
+ * (лишние задачи только ждали бы семафор в отдельных потоках),
+ * готовые записи идут во вторую ограниченную очередь, откуда стадия сохранения забирает их пачками по batchSize.
+ * Пустой Optional в очереди — признак конца потока.
+ */
+public class DetailPipeline<T> implements AutoCloseable {
+    private final DetailExecutor executor;
+    private final Consumer<T> enrich;
+    private final Consumer<List<T>> persist;
+    private final int batchSize;
+    private final Consumer<String> log;
+
+    private final BlockingQueue<Optional<T>> stubs;
+    private final BlockingQueue<Optional<T>> completed;
+    // Задачи, отданные исполнителю и ещё не завершённые
+    private final Object slots = new Object();
+    private int running;
+    private final Thread dispatcher;
+    private final Thread persister;
+    private boolean finished;
+
+    public DetailPipeline(DetailExecutor executor, int capacity, Consumer<T> enrich,
+                          int batchSize, Consumer<List<T>> persist, Consumer<String> log) {
+        this.executor = executor;
+        this.enrich = enrich;
+        this.persist = persist;
+        this.batchSize = Math.max(1, batchSize);
+        this.log = log;
+        this.stubs = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.completed = new ArrayBlockingQueue<>(Math.max(1, capacity));
+
+        this.dispatcher = new Thread(this::dispatch, "pipeline-dispatch");
+        this.persister = new Thread(this::persistLoop, "pipeline-persist");
+        dispatcher.setDaemon(true);
+        persister.setDaemon(true);
+        dispatcher.start();
+        persister.start();
+    }
+
+    // Списочная стадия: блокируется, пока в очереди нет места
+    public void put(T stub) throws InterruptedException {
+        stubs.put(Optional.of(stub));
+    }
+
+    public int queued() {
+        return stubs.size();
+    }
+
+    /**
+     * Закрывает вход и ждёт, пока все принятые записи пройдут карточки и будут сохранены.
+     */
+    public void finish() throws InterruptedException {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+        }
+        stubs.put(Optional.empty());
+        persister.join();
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                Optional<T> next = stubs.take();
+                if (next.isEmpty()) break;
+                T item = next.get();
+                acquireSlot();
+                executor.submit(() -> enrich.accept(item)).whenComplete((ignored, error) -> {
+                    // Запись уходит на сохранение и при ошибке карточки: основные данные уже есть
+                    try {
+                        completed.put(Optional.of(item));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        releaseSlot();
+                    }
+                });
+            }
+            // Дожидаемся задач, которые ещё в работе
+            awaitIdle();
+            completed.put(Optional.empty());
+        } catch (InterruptedException e) {
+            completed.offer(Optional.empty());
+        }
+    }
+
+    // Лимит исполнителя меняется на ходу, поэтому при ожидании он перечитывается и без освобождения слота
+    private void acquireSlot() throws InterruptedException {
+        synchronized (slots) {
+            while (running >= executor.getLimit()) {
+                slots.wait(TimeUnit.SECONDS.toMillis(1));
+            }
+            running++;
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (slots) {
+            running--;
+            slots.notifyAll();
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        synchronized (slots) {
+            while (running > 0) {
+                slots.wait();
+            }
+        }
+    }
+
+    private void persistLoop() {
+        List<T> batch = new ArrayList<>();
+        try {
+            while (true) {
+                Optional<T> next = completed.take();
+                if (next.isEmpty()) break;
+                batch.add(next.get());
+                if (batch.size() >= batchSize) {
+                    flush(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            persist.accept(new ArrayList<>(batch));
+        } catch (RuntimeException e) {
+            log.accept("❌ Ошибка сохранения пачки записей: " + e.getMessage());
+        }
+        batch.clear();
+    }
+
+    @Override
+    public void close() {
+        dispatcher.interrupt();
+        persister.interrupt();
+    }
+}
@@ -0,0 +1,127 @@
+package com.parser;
+
+import lombok.Getter;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import java.time.Duration;
+
+/**
+ * Долгоживущий браузер для парсинга карточек организаций.
+ * Живёт в {@link DetailWorkerPool} и переиспользуется между компаниями и страницами.
+ * В режиме навигации внутри приложения держит одну вкладку с загруженным Angular-приложением.
+ */
+@Getter
+public class DetailWorker {
+    private final int id;
+    private final WebDriver driver;
+    private final WebDriverWait wait;
+    private final String homeWindow;
+    private int pagesServed;
+    private boolean appLoaded;
+    private XhrCapture capture;
+
+    // Помечаем текущее содержимое ui-view как устаревшее и меняем hash-маршрут без перезагрузки приложения
+    // (если маршрут не меняется, hashchange не сработает — тогда возвращаем false и грузим страницу заново)
+    private static final String NAVIGATE_SCRIPT =
+            "if (window.location.hash === arguments[0]) return false;" +
+            "var views = document.querySelectorAll('[ui-view] > *, [data-ui-view] > *, [ng-view] > *');" +
+            "for (var i = 0; i < views.length; i++) { views[i].setAttribute('data-parser-stale', '1'); }" +
+            "window.location.hash = arguments[0];" +
+            "return true;";
+
+    // Новая карточка отрисована: маршрут совпал, $http простаивает, в ui-view появился новый непустой элемент
+    private static final String RENDERED_SCRIPT =
+            "var route = arguments[0];" +
+            "var path = function (h) { h = decodeURIComponent(h || ''); var q = h.indexOf('?'); return q < 0 ? h : h.substring(0, q); };" +
+            "if (route && path(window.location.hash) !== path(route)) return false;" +
+            "if (document.readyState !== 'complete') return false;" +
+            "try {" +
+            "  var inj = window.angular && angular.element(document.body).injector();" +
+            "  if (inj && inj.get('$http').pendingRequests.length > 0) return false;" +
+            "} catch (e) {}" +
+            "var views = document.querySelectorAll('[ui-view] > *, [data-ui-view] > *, [ng-view] > *');" +
+            "if (views.length === 0) return !!document.querySelector('ef-ppa-di-citizen-reception-info, span[ng-bind=\"data.orgEmail\"]');" +
+            "for (var i = 0; i < views.length; i++) {" +
+            "  if (!views[i].hasAttribute('data-parser-stale') && views[i].textContent.trim().length > 0) return true;" +
+            "}" +
+            "return false;";
+
+    DetailWorker(int id, WebDriver driver, Duration timeout) {
+        this.id = id;
+        this.driver = driver;
+        this.wait = new WebDriverWait(driver, timeout);
+        this.homeWindow = driver.getWindowHandle();
+    }
+
+    /**
+     * Открывает карточку организации в уже загруженном приложении: первый переход — обычный get,
+     * дальше только смена hash-маршрута. Возвращает false, если карточка не отрисовалась за таймаут.
+     */
+    boolean openInApp(String url) {
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        int hashAt = url.indexOf('#');
+        String route = hashAt >= 0 ? url.substring(hashAt) : null;
+
+        if (!appLoaded || route == null || !Boolean.TRUE.equals(js.executeScript(NAVIGATE_SCRIPT, route))) {
+            driver.get(url);
+            appLoaded = route != null;
+        }
+
+        try {
+            wait.until(d -> Boolean.TRUE.equals(js.executeScript(RENDERED_SCRIPT, route)));
+            return true;
+        } catch (TimeoutException e) {
+            // Приложение могло зависнуть на маршруте — следующий переход начнём с полной загрузки
+            appLoaded = false;
+            return false;
+        }
+    }
+
+    // Перехват ответов карточки в этом браузере; создаётся при первом обращении
+    XhrCapture capture(String... urlMarkers) {
+        if (capture == null) {
+            capture = new XhrCapture(driver, urlMarkers);
+        }
+        return capture;
+    }
+
+    void markPageServed() {
+        pagesServed++;
+    }
+
+    // Браузер отвечает и у него осталась исходная вкладка
+    boolean isHealthy() {
+        try {
+            if (!driver.getWindowHandles().contains(homeWindow)) {
+                return false;
+            }
+            if (driver.getWindowHandles().size() > 1) {
+                // Висящие вкладки от прерванного парсинга — закрываем
+                for (String handle : driver.getWindowHandles()) {
+                    if (!handle.equals(homeWindow)) {
+                        driver.switchTo().window(handle);
+                        driver.close();
+                    }
+                }
+            }
+            driver.switchTo().window(homeWindow);
+            Object ping = ((JavascriptExecutor) driver).executeScript("return 1;");
+            return ping != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    void quit() {
+        if (capture != null) {
+            capture.close();
+        }
+        try {
+            driver.quit();
+        } catch (Exception ignore) {
+        }
+    }
+}
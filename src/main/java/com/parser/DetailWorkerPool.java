@@ -0,0 +1,149 @@
+package com.parser;
+
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Пул браузеров для парсинга карточек организаций на весь запуск.
+ * Браузеры создаются лениво (не больше size), проверяются перед выдачей
+ * и пересоздаются только после maxPagesPerWorker карточек или после ошибки.
+ * Размер можно менять на ходу: при уменьшении лишние браузеры закрываются по мере возврата.
+ */
+public class DetailWorkerPool implements AutoCloseable {
+    private final Supplier<WebDriver> driverFactory;
+    private int size;
+    private final int maxPagesPerWorker;
+    private final Duration timeout;
+    private final Consumer<String> log;
+
+    private final Deque<DetailWorker> idle = new ArrayDeque<>();
+    private int created;
+    private int nextId = 1;
+    private boolean closed;
+
+    public DetailWorkerPool(Supplier<WebDriver> driverFactory, int size, int maxPagesPerWorker,
+                            Duration timeout, Consumer<String> log) {
+        this.driverFactory = driverFactory;
+        this.size = Math.max(1, size);
+        this.maxPagesPerWorker = Math.max(1, maxPagesPerWorker);
+        this.timeout = timeout;
+        this.log = log;
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public synchronized void setSize(int size) {
+        this.size = Math.max(1, size);
+        notifyAll();
+    }
+
+    /**
+     * Выдаёт исправный браузер; если все заняты и лимит исчерпан — ждёт возврата.
+     */
+    public DetailWorker borrow() throws InterruptedException {
+        while (true) {
+            DetailWorker worker;
+            int id;
+            synchronized (this) {
+                while (!closed && idle.isEmpty() && created >= size) {
+                    wait();
+                }
+                if (closed) {
+                    throw new InterruptedException("Пул браузеров закрыт");
+                }
+                worker = idle.pollFirst();
+                if (worker == null) {
+                    created++;
+                    id = nextId++;
+                } else {
+                    id = worker.getId();
+                }
+            }
+
+            if (worker != null) {
+                if (worker.isHealthy()) {
+                    return worker;
+                }
+                log.accept("♻️ Браузер #" + id + " не отвечает, пересоздаём");
+                discard(worker);
+                continue;
+            }
+
+            try {
+                worker = new DetailWorker(id, driverFactory.get(), timeout);
+                log.accept("🚀 Запущен браузер для карточек #" + id);
+                return worker;
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    created--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Возвращает браузер в пул. После ошибки или исчерпания лимита карточек браузер закрывается,
+     * а вместо него при следующем запросе поднимается новый.
+     */
+    public void release(DetailWorker worker, boolean failed) {
+        if (worker == null) return;
+        worker.markPageServed();
+
+        boolean recycle = failed || worker.getPagesServed() >= maxPagesPerWorker;
+        boolean surplus;
+        synchronized (this) {
+            surplus = !closed && created > size;
+            if (!closed && !recycle && !surplus) {
+                idle.addLast(worker);
+                notifyAll();
+                return;
+            }
+        }
+
+        if (surplus) {
+            log.accept("🔻 Браузер #" + worker.getId() + " закрыт: лимит уменьшен до " + getSize());
+        } else if (recycle && !failed) {
+            log.accept("♻️ Браузер #" + worker.getId() + " обработал " + worker.getPagesServed() + " карточек, пересоздаём");
+        } else if (failed) {
+            log.accept("♻️ Браузер #" + worker.getId() + " пересоздаётся после ошибки");
+        }
+        discard(worker);
+    }
+
+    private void discard(DetailWorker worker) {
+        worker.quit();
+        synchronized (this) {
+            created--;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        Deque<DetailWorker> toQuit;
+        synchronized (this) {
+            closed = true;
+            toQuit = new ArrayDeque<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (DetailWorker worker : toQuit) {
+            worker.quit();
+        }
+        synchronized (this) {
+            created -= toQuit.size();
+        }
+        if (!toQuit.isEmpty()) {
+            log.accept("🔴 Закрыто браузеров для карточек: " + toQuit.size());
+        }
+    }
+}
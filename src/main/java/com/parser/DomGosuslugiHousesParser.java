@@ -1,20 +1,6 @@
 package com.parser;
 
 import lombok.Setter;
-import org.apache.poi.common.usermodel.HyperlinkType;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.CreationHelper;
-import org.apache.poi.ss.usermodel.FillPatternType;
-import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.ss.usermodel.Hyperlink;
-import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.VerticalAlignment;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
@@ -28,27 +14,81 @@ import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
-import static java.lang.Thread.sleep;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DomGosuslugiHousesParser {
     private WebDriver driver;
     private WebDriverWait wait;
+    private PageReadiness readiness;
+    private XhrCapture searchCapture;
+    private CheckpointJournal journal;
+    // Поток записи журнала строк; поток-шард его читает при sync()
+    private volatile AsyncRowWriter<House> rowWriter;
+    private long searchMark;
     private final List<House> houses = new ArrayList<>();
 
     private static final String TARGET_URL = "https://dom.gosuslugi.ru/#!/houses";
     private static final int TIMEOUT_SECONDS = 30;
     private static final String BASE_URL = "https://dom.gosuslugi.ru";
+    private static final int PAGE_SIZE = 100;
+    private static final int HTTP_CONCURRENCY = 4;
+    // Перехват XHR (движок CDP): ответ поиска и время ожидания его тела после отрисовки
+    private static final String SEARCH_MARKER = XhrCapture.pathOf(HousesHttpEngine.SEARCH_PATH);
+    private static final Duration CAPTURE_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String CARD_SELECTOR = ".register-card[ng-repeat*='house in searchResults.items']";
+
+    // Все карточки домов страницы за один executeScript: адрес, guid/typeCode из scope.house и поля таблиц
+    private static final String EXTRACT_CARDS_SCRIPT =
+            "var txt = function (el) { return el ? (el.innerText || el.textContent || '').trim() : ''; };" +
+            "var fields = {" +
+            "  'Год ввода в эксплуатацию:': 'commissioningYear'," +
+            "  'Количество этажей:': 'floorsCount'," +
+            "  'Управляющая организация:': 'managementOrganization'," +
+            "  'Количество помещений (жилых/нежилых):': 'premisesCount'" +
+            "};" +
+            "var cards = document.querySelectorAll(arguments[0]);" +
+            "if (cards.length === 0) cards = document.querySelectorAll('.register-card');" +
+            "var out = [];" +
+            "for (var i = 0; i < cards.length; i++) {" +
+            "  var card = cards[i];" +
+            "  var item = {address: txt(card.querySelector('.register-card__header-title .cnt-link-hover.ng-binding'))};" +
+            "  if (!item.address) item.address = txt(card.querySelector('.register-card__header-title .ng-binding'));" +
+            "  try {" +
+            "    var link = card.querySelector('[ng-click*=\"viewHouse\"]');" +
+            "    var scope = link && window.angular && angular.element(link).scope();" +
+            "    if (scope && scope.house) {" +
+            "      item.guid = scope.house.guid;" +
+            "      item.typeCode = scope.house.houseType ? String(scope.house.houseType.code) : '1';" +
+            "    }" +
+            "  } catch (e) {}" +
+            "  var trs = card.querySelectorAll('.register-card__table tr');" +
+            "  for (var k = 0; k < trs.length; k++) {" +
+            "    var tds = trs[k].querySelectorAll('td');" +
+            "    if (tds.length < 2) continue;" +
+            "    var key = fields[txt(tds[0]).replace(/\\s+/g, ' ').trim()];" +
+            "    if (key) item[key] = txt(tds[1]);" +
+            "  }" +
+            "  out.push(item);" +
+            "}" +
+            "return out;";
 
     private int startPage = 1;
     private int currentPage = 1;
@@ -58,12 +98,49 @@ public class DomGosuslugiHousesParser {
     @Setter
     private String region = "Санкт-Петербург";
     private AtomicBoolean cancelRequested = new AtomicBoolean(false);
-
+    @Setter
+    private ParserEngine engine = ParserEngine.SELENIUM;
+    // Какие ресурсы браузеры не загружают (CDP Network.setBlockedURLs)
+    @Setter
+    private Set<ResourceBlocker.Category> blockedResources = ResourceBlocker.configuredCategories();
+    private final ResourceBlocker.Stats resourceStats = new ResourceBlocker.Stats();
+    // Сколько навигации этой сессии простояли в ожидании общего лимита запросов
+    private final RateGovernor.Delays rateDelays = new RateGovernor.Delays();
+    // Адрес JSON-бэкенда для HTTP-движка; -Dgosuslugi.api.url=http://localhost:8089 — локальный сервер с записанными ответами
+    @Setter
+    private String apiBaseUrl = System.getProperty("gosuslugi.api.url", BASE_URL);
+    // Шардирование: число независимых сессий браузера, между которыми делится диапазон страниц
+    @Setter
+    private int shards = 1;
+    // Последняя страница диапазона (включительно) для сессии-шарда
+    @Setter
+    private int endPage = Integer.MAX_VALUE;
+    // false — регион уже задан через region, диалог выбора не показываем
+    @Setter
+    private boolean askRegion = true;
+    // Получатель готовых страниц вместо собственного сохранения (сессия-шард отдаёт их координатору)
+    @Setter
+    private PageSink<House> pageSink;
+    // Пакетный режим: несколько регионов за запуск, одновременно не больше regionConcurrency
+    @Setter
+    private boolean multiRegion = false;
+    @Setter
+    private int regionConcurrency = 2;
 
     public void setCancellationFlag(AtomicBoolean cancelRequested) {
         this.cancelRequested = (cancelRequested != null) ? cancelRequested : new AtomicBoolean(false);
     }
 
+    // Разрешение общего ограничителя частоты перед навигацией; ожидание копится для отчёта по странице
+    private void throttle(RateGovernor.Stage stage) throws InterruptedException {
+        RateGovernor.shared().acquire(stage, rateDelays);
+    }
+
+    private void reportRateDelays(RateGovernor.Delays delays) {
+        String report = delays.drainReport();
+        if (report != null) notifyLog(report);
+    }
+
     private void notifyStatus(String text) {
         if (listener != null) listener.onStatus(text);
         System.out.println(text);
@@ -94,34 +171,49 @@ public class DomGosuslugiHousesParser {
 
     public void parseHouses() {
         try {
-            checkSeleniumSetup();
-
-            notifyStatus("Запуск драйвера...");
-            initDriver();
-            notifyLog("🚀 Запуск парсера объектов жилищного фонда...");
+            if (multiRegion && askRegion) {
+                // Пакет успешен, если обработан хотя бы один регион
+                RegionBatch.Result result = parseRegionsBatch();
+                notifyFinished(!result.succeeded().isEmpty(), result.summary());
+                return;
+            }
+            if (engine == ParserEngine.HTTP) {
+                parseHousesHttp();
+            } else if (shards > 1 && pageSink == null) {
+                parseHousesSharded();
+            } else {
+                checkSeleniumSetup();
 
-            driver.get(TARGET_URL);
-            wait.until(ExpectedConditions.presenceOfElementLocated(By.cssSelector("body")));
-            sleep(5000);
-            checkCancelled();
+                notifyStatus("Запуск драйвера...");
+                initDriver();
+                if (engine == ParserEngine.CDP) {
+                    startSearchCapture();
+                }
+                notifyLog("🚀 Запуск парсера объектов жилищного фонда...");
+                notifyLog(RateGovernor.shared().describe());
 
-            selectRegionFilter();
-            //selectSpbFilter();
-            checkCancelled();
+                throttle(RateGovernor.Stage.LIST);
+                driver.get(TARGET_URL);
+                if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                    notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+                }
+                checkCancelled();
 
-            clickSearchButton();
-            sleep(1000);
-            checkCancelled();
+                selectRegionFilter();
+                //selectSpbFilter();
+                checkCancelled();
 
-            selectItemsPerPage("100");
-            sleep(3000);
+                clickSearchButton();
+                checkCancelled();
 
-            parseAllPages(startPage);
+                selectItemsPerPage(String.valueOf(PAGE_SIZE));
 
-            notifyLog("📊 Всего найдено домов: " + houses.size());
+                parseAllPages(startPage);
+            }
 
-            notifyStatus("Сохранение в Excel...");
-            saveToExcel();
+            if (pageSink == null) {
+                saveToExcel();
+            }
 
             notifyFinished(true, "Успешно: сохранено " + houses.size() + " записей");
         } catch (InterruptedException ie) {
@@ -131,6 +223,12 @@ public class DomGosuslugiHousesParser {
             notifyLog("❌ Ошибка при парсинге: " + e.getMessage());
             notifyFinished(false, "Ошибка: " + e.getMessage());
         } finally {
+            // После отмены или ошибки сохраняем то, что успели собрать
+            finishOutput();
+            if (searchCapture != null) {
+                searchCapture.close();
+                searchCapture = null;
+            }
             if (driver != null) {
                 driver.quit();
                 notifyLog("🔴 Браузер закрыт");
@@ -138,6 +236,162 @@ public class DomGosuslugiHousesParser {
         }
     }
 
+    // Постраничный обход через JSON-бэкенд: до HTTP_CONCURRENCY следующих страниц загружаются параллельно,
+    // а сохраняются строго по порядку
+    private void parseHousesHttp() throws IOException, InterruptedException {
+        try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiBaseUrl, HousesHttpEngine.STATE_GUID, HTTP_CONCURRENCY)) {
+            HousesHttpEngine http = new HousesHttpEngine(client);
+            notifyLog("🌐 Запуск парсера объектов жилищного фонда (HTTP, без браузера): " + client.getBaseUrl());
+            notifyLog(RateGovernor.shared().describe());
+
+            notifyStatus("Загрузка списка регионов...");
+            Map<String, String> regions = client.fetchRegions();
+            String selectedRegion = askRegion && listener != null
+                    ? listener.showRegionSelectionDialog(new ArrayList<>(regions.keySet()))
+                    : region;
+            if (selectedRegion == null) {
+                throw new InterruptedException("Пользователь отменил выбор региона");
+            }
+            String regionCode = regions.get(selectedRegion);
+            if (regionCode == null) {
+                notifyLog("⚠️ Регион '" + selectedRegion + "' не найден в справочнике, поиск без фильтра по региону");
+            } else {
+                region = selectedRegion;
+                notifyLog("✅ Выбран регион: " + selectedRegion);
+            }
+
+            openJournal();
+            int firstPage = resumeFromJournal(startPage);
+
+            HousesHttpEngine.Page first = http.search(regionCode, firstPage, PAGE_SIZE);
+            int totalPages = first.total() > 0 ? (int) ((first.total() + PAGE_SIZE - 1) / PAGE_SIZE) : firstPage;
+            notifyLog("Общее количество страниц: " + totalPages);
+
+            Deque<CompletableFuture<HousesHttpEngine.Page>> inFlight = new ArrayDeque<>();
+            int nextToRequest = firstPage + 1;
+            boolean reachedEnd = true;
+            try {
+                for (currentPage = firstPage; currentPage <= totalPages; currentPage++) {
+                    checkCancelled();
+                    while (nextToRequest <= totalPages && inFlight.size() < HTTP_CONCURRENCY) {
+                        inFlight.addLast(http.searchAsync(regionCode, nextToRequest++, PAGE_SIZE));
+                    }
+
+                    notifyPageProgress(currentPage, totalPages);
+                    notifyLog("📄 Обработка страницы " + currentPage + " из " + totalPages);
+
+                    HousesHttpEngine.Page page = (currentPage == firstPage)
+                            ? first
+                            : awaitHttpPage(inFlight.pollFirst(), http, regionCode, currentPage);
+                    if (page == null) {
+                        reachedEnd = false;
+                        continue;
+                    }
+                    if (page.houses().isEmpty()) {
+                        notifyLog("✅ Достигнута последняя страница");
+                        break;
+                    }
+
+                    houses.addAll(page.houses());
+                    notifyLog("🎯 Парсинг страницы " + currentPage + " завершен, собрано: " + page.houses().size() + " домов");
+                    reportRateDelays(client.getRateDelays());
+
+                    // Запись идёт в своём потоке; страница отмечается в журнале, когда её строки на диске
+                    notifyStatus("Сохранение данных страницы " + currentPage + "...");
+                    int savedPage = currentPage;
+                    saveIntermediateResults(() -> journalPage(savedPage));
+                }
+            } catch (InterruptedException ie) {
+                reachedEnd = false;
+                inFlight.forEach(f -> f.cancel(true));
+                if (!houses.isEmpty()) {
+                    notifyStatus("Сохранение данных перед остановкой...");
+                    saveIntermediateResults();
+                }
+                throw ie;
+            } finally {
+                closeJournal(reachedEnd);
+            }
+        }
+    }
+
+    // Журнал прогресса для текущего региона; без него запуск идёт как обычно, только без продолжения
+    private void openJournal() {
+        try {
+            journal = CheckpointJournal.open(outputBaseName());
+            if (journal.hasProgress()) {
+                notifyLog("📒 Журнал " + journal.getPath().getFileName() + ": сохранено страниц " + journal.completedPages());
+            }
+        } catch (IOException e) {
+            journal = null;
+            notifyLog("⚠️ Журнал прогресса недоступен, продолжение после сбоя не сработает: " + e.getMessage());
+        }
+        if (pageSink == null && (journal == null || !journal.hasProgress())) {
+            resetRowJournal();
+        }
+    }
+
+    // Первая страница, которой нет в журнале
+    private int resumeFromJournal(int from) {
+        int page = journal != null ? journal.resumePage(from) : from;
+        if (page != from) {
+            notifyLog("📒 Продолжаем по журналу со страницы " + page);
+        }
+        return page;
+    }
+
+    // В журнал попадает только сохранённое до отмены
+    private void journalPage(int page) {
+        if (journal == null || cancelRequested.get()) return;
+        try {
+            journal.pageDone(page);
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи журнала: " + e.getMessage());
+        }
+    }
+
+    // Весь реестр пройден — отмечаем конец, следующий запуск начнётся с начала (сессия-шард этого не решает)
+    private void closeJournal(boolean reachedEnd) {
+        if (journal == null) return;
+        syncOutput();
+        try {
+            if (reachedEnd && !cancelRequested.get() && pageSink == null && endPage == Integer.MAX_VALUE) {
+                journal.finish();
+                notifyLog("📒 Регион пройден полностью, журнал закрыт");
+            }
+            journal.close();
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи журнала: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    // Имя выходного файла без расширения; журнал прогресса лежит рядом с ним
+    private String outputBaseName() {
+        return "Объекты жилищного фонда " + region + " " + LocalDate.now().getYear();
+    }
+
+    // Ждём страницу с проверкой отмены; при ошибке одна синхронная повторная попытка
+    private HousesHttpEngine.Page awaitHttpPage(CompletableFuture<HousesHttpEngine.Page> future, HousesHttpEngine http,
+                                                String regionCode, int pageNumber) throws InterruptedException {
+        while (true) {
+            try {
+                return future.get(1, TimeUnit.SECONDS);
+            } catch (java.util.concurrent.TimeoutException e) {
+                checkCancelled();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                notifyLog("⚠️ Ошибка загрузки страницы " + pageNumber + ": " + cause.getMessage() + ", повторная попытка...");
+                try {
+                    return http.search(regionCode, pageNumber, PAGE_SIZE);
+                } catch (IOException io) {
+                    notifyLog("❌ Страница " + pageNumber + " пропущена: " + io.getMessage());
+                    return null;
+                }
+            }
+        }
+    }
+
     public void initDriver() {
         try {
             String chromeDriverPath = "chromedriver.exe";
@@ -156,8 +410,10 @@ public class DomGosuslugiHousesParser {
         }
 
         try {
-            driver = new ChromeDriver(createChromeOptions());
+            notifyLog("🛡️ Блокируемые ресурсы: " + ResourceBlocker.describe(blockedResources));
+            driver = newChromeDriver();
             wait = new WebDriverWait(driver, Duration.ofSeconds(TIMEOUT_SECONDS));
+            readiness = new PageReadiness(driver);
             notifyLog("🚀 Драйвер успешно инициализирован");
         } catch (Exception e) {
             notifyLog("❌ Ошибка инициализации драйвера: " + e.getMessage());
@@ -165,6 +421,17 @@ public class DomGosuslugiHousesParser {
         }
     }
 
+    // Браузер с политикой блокировки ресурсов; без DevTools работаем без неё
+    private ChromeDriver newChromeDriver() {
+        ChromeDriver chrome = new ChromeDriver(createChromeOptions());
+        try {
+            ResourceBlocker.apply(chrome, blockedResources, resourceStats);
+        } catch (Exception e) {
+            notifyLog("⚠️ Блокировка ресурсов не включена: " + e.getMessage());
+        }
+        return chrome;
+    }
+
     private ChromeOptions createChromeOptions() {
         ChromeOptions options = new ChromeOptions();
         options.addArguments("--headless=new");
@@ -177,7 +444,6 @@ public class DomGosuslugiHousesParser {
         options.addArguments("--remote-allow-origins=*");
         options.addArguments("--disable-extensions");
         options.addArguments("--disable-plugins");
-        options.addArguments("--disable-images");
         options.addArguments("--memory-pressure-off");
         return options;
     }
@@ -205,7 +471,9 @@ public class DomGosuslugiHousesParser {
                         .map(WebElement::getText)
                         .toList();
 
-                String selectedRegion = listener.showRegionSelectionDialog(regions);
+                String selectedRegion = askRegion && listener != null
+                        ? listener.showRegionSelectionDialog(regions)
+                        : region;
 
                 if (selectedRegion == null) {
                     throw new InterruptedException("Пользователь отменил выбор региона");
@@ -214,23 +482,24 @@ public class DomGosuslugiHousesParser {
                 boolean regionFound = false;
 
                 for (WebElement option : dropdown.getOptions()) {
-                    if (option.getText().contains(region)) {
+                    if (option.getText().contains(selectedRegion)) {
                         dropdown.selectByVisibleText(option.getText());
                         regionFound = true;
+                        region = selectedRegion;
                         notifyLog("✅ Выбран регион: " + region);
                         break;
                     }
                 }
 
                 if (!regionFound) {
-                    notifyLog("⚠️ Регион '" + region + "' не найден в списке, используется первый доступный");
+                    notifyLog("⚠️ Регион '" + selectedRegion + "' не найден в списке, используется первый доступный");
                     // Выбираем первый доступный регион
                     if (dropdown.getOptions().size() > 1) {
                         dropdown.selectByIndex(1); // пропускаем "Все регионы" если есть
                     }
                 }
             }
-            sleep(1000);
+            readiness.settled();
         } catch (Exception e) {
             notifyLog("❌ Ошибка выбора региона: " + e.getMessage());
         }
@@ -248,7 +517,7 @@ public class DomGosuslugiHousesParser {
                     }
                 }
             }
-            sleep(1000);
+            readiness.settled();
         } catch (Exception e) {
             notifyLog("Ошибка выбора фильтра: " + e.getMessage());
         }
@@ -280,14 +549,17 @@ public class DomGosuslugiHousesParser {
 
             if (button != null) {
                 ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", button);
-                sleep(1000);
+                readiness.markCardsStale(CARD_SELECTOR);
+                markSearch();
                 ((JavascriptExecutor) driver).executeScript("arguments[0].click();", button);
+                // Ждем загрузки результатов
+                if (!readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT)) {
+                    notifyLog("⚠️ Результаты поиска не появились за " + PageReadiness.CARDS_TIMEOUT.toSeconds() + " сек");
+                }
             } else {
                 notifyLog("❌ Кнопка поиска не найдена");
             }
 
-            sleep(3000); // Ждем загрузки результатов
-
         } catch (Exception e) {
             notifyLog("❌ Ошибка при нажатии кнопки 'Найти': " + e.getMessage());
         }
@@ -323,6 +595,8 @@ public class DomGosuslugiHousesParser {
 
             if (selectElement != null) {
                 Select dropdown = new Select(selectElement);
+                readiness.markCardsStale(CARD_SELECTOR);
+                markSearch();
                 try {
                     dropdown.selectByValue(countPerPage);
                     notifyLog("✅ Выбрано элементов на странице: " + countPerPage);
@@ -335,7 +609,9 @@ public class DomGosuslugiHousesParser {
                         notifyLog("❌ Ошибка выбора количества элементов: " + e2.getMessage());
                     }
                 }
-                sleep(1500); // Ждем обновления контента
+                // Ждем, пока список перерисуется с новым размером страницы
+                readiness.settled();
+                readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
             } else {
                 notifyLog("⚠️ Элемент 'Выводить по' не найден, используем стандартные настройки");
             }
@@ -348,17 +624,33 @@ public class DomGosuslugiHousesParser {
         int totalPages = getTotalPages();
         notifyLog("Общее количество страниц: " + totalPages);
 
+        openJournal();
+        startPage = resumeFromJournal(startPage);
+        if (startPage > endPage) {
+            notifyLog("✅ Диапазон уже сохранён по журналу");
+            closeJournal(true);
+            return;
+        }
         currentPage = startPage;
 
         if (startPage > 1) {
             if (startPage > totalPages) {
                 notifyLog("❌ Стартовая страница " + startPage + " превышает общее количество страниц " + totalPages);
+                closeJournal(startPage == totalPages + 1);
                 return;
             }
             notifyLog("⏩ Переход к странице " + startPage);
-            goToPage(startPage);
+            if (!goToPage(startPage)) {
+                Integer actual = readiness.activePageNumber();
+                notifyLog("❌ Не удалось открыть страницу " + startPage + ", активна страница " + actual);
+                if (actual != null) {
+                    currentPage = actual;
+                }
+            }
         }
 
+        boolean reachedEnd = false;
+        String navigationFailure = null;
         try {
             while (true) {
                 if (cancelRequested.get()) {
@@ -370,51 +662,294 @@ public class DomGosuslugiHousesParser {
 
                 waitForPageLoad(currentPage);
                 parseCurrentPage();
-
-                if (!houses.isEmpty()) {
-                    notifyStatus("Сохранение данных страницы " + currentPage + "...");
-                    saveIntermediateResults();
-                    cleanupMemory();
+                if (!blockedResources.isEmpty()) {
+                    notifyLog(resourceStats.drainReport());
                 }
+                reportRateDelays(rateDelays);
+
+                // Страницу, с которой ничего не собрано (карточки не загрузились), в журнал не пишем
+                int savedPage = currentPage;
+                flushPage("Сохранение данных страницы " + currentPage + "...",
+                        houses.isEmpty() ? null : () -> journalPage(savedPage));
 
                 if (cancelRequested.get()) {
                     throw new InterruptedException("Операция отменена пользователем");
                 }
 
-                if (!goToNextPage()) {
+                if (currentPage >= endPage) {
+                    notifyLog("✅ Достигнут конец диапазона: страница " + endPage);
+                    reachedEnd = true;
+                    break;
+                }
+
+                PageTurn turn = goToNextPage();
+                if (turn == PageTurn.NO_NEXT_PAGE || (turn == PageTurn.FAILED && currentPage >= totalPages)) {
                     notifyLog("✅ Достигнута последняя страница");
+                    reachedEnd = true;
+                    break;
+                }
+                if (turn == PageTurn.FAILED) {
+                    // Журнал остаётся открытым: следующий запуск продолжит со страницы после сохранённых
+                    navigationFailure = "Не удалось перейти на страницу " + (currentPage + 1) + " из " + totalPages
+                            + ", прогресс сохранён в журнале";
                     break;
                 }
 
                 currentPage++;
             }
         } catch (InterruptedException ie) {
-            if (!houses.isEmpty()) {
-                notifyStatus("Сохранение данных перед остановкой...");
-                saveIntermediateResults();
-            }
+            flushPage("Сохранение данных перед остановкой...", null);
             throw ie;
         } catch (Exception e) {
             notifyLog("Ошибка парсинга страниц: " + e.getMessage());
+        } finally {
+            closeJournal(reachedEnd);
+        }
+        if (navigationFailure != null) {
+            throw new RuntimeException(navigationFailure);
+        }
+    }
+
+    /**
+     * Пакетный режим: пользователь отмечает регионы (или все), каждый обходится отдельным запуском
+     * парсера со своей сессией и своим файлом; одновременно не больше regionConcurrency регионов.
+     */
+    private RegionBatch.Result parseRegionsBatch() throws Exception {
+        notifyStatus("Загрузка списка регионов...");
+        List<String> available = loadRegionNames();
+        List<String> selected = listener != null ? listener.showRegionsSelectionDialog(available) : List.of(region);
+        if (selected == null || selected.isEmpty()) {
+            throw new InterruptedException("Пользователь отменил выбор региона");
+        }
+        notifyLog("🗺️ Регионов к обходу: " + selected.size() + ", одновременно: " + regionConcurrency);
+
+        RegionBatch.Result result = RegionBatch.run(selected, regionConcurrency, listener, cancelRequested,
+                (name, regionListener) -> {
+                    DomGosuslugiHousesParser parser = new DomGosuslugiHousesParser();
+                    parser.setListener(regionListener);
+                    parser.setCancellationFlag(cancelRequested);
+                    parser.setRegion(name);
+                    parser.setAskRegion(false);
+                    parser.setEngine(engine);
+                    parser.setBlockedResources(blockedResources);
+                    parser.setApiBaseUrl(apiBaseUrl);
+                    parser.setShards(shards);
+                    parser.parseHouses();
+                });
+        notifyLog("🗺️ " + result.summary());
+        checkCancelled();
+        return result;
+    }
+
+    // Названия регионов: из справочника бэкенда для HTTP-движка, иначе из фильтра на странице реестра
+    private List<String> loadRegionNames() throws Exception {
+        if (engine == ParserEngine.HTTP) {
+            try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiBaseUrl, HousesHttpEngine.STATE_GUID, 1)) {
+                return new ArrayList<>(client.fetchRegions().keySet());
+            }
+        }
+        try {
+            initDriver();
+            driver.get(TARGET_URL);
+            if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+            }
+            List<String> names = new ArrayList<>();
+            List<WebElement> selects = driver.findElements(By.cssSelector("select"));
+            if (!selects.isEmpty()) {
+                for (WebElement option : new Select(selects.get(0)).getOptions()) {
+                    String text = option.getText().trim();
+                    if (!text.isEmpty()) names.add(text);
+                }
+            }
+            return names;
+        } finally {
+            if (driver != null) {
+                driver.quit();
+                driver = null;
+            }
         }
     }
 
-    private void goToPage(int pageNumber) {
+    // Готовая страница: сессия-шард отдаёт её координатору, иначе в поток записи; onSaved — когда она на диске
+    private void flushPage(String status, Runnable onSaved) {
+        if (pageSink != null) {
+            pageSink.accept(new ArrayList<>(houses), onSaved);
+            houses.clear();
+            return;
+        }
+        if (!houses.isEmpty()) {
+            notifyStatus(status);
+        }
+        saveIntermediateResults(onSaved);
+    }
+
+    /**
+     * Шардированный обход: пробная сессия выбирает регион и узнаёт число страниц, затем диапазон
+     * startPage..totalPages делится между shards независимыми сессиями (свой браузер и фильтры).
+     * Страницы всех сессий сохраняются в один файл, дома с уже виденной ссылкой отбрасываются.
+     */
+    private void parseHousesSharded() throws InterruptedException {
+        notifyStatus("Пробная сессия: регион и число страниц...");
+        int totalPages;
+        try {
+            initDriver();
+            driver.get(TARGET_URL);
+            if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+            }
+            checkCancelled();
+
+            selectRegionFilter();
+            checkCancelled();
+
+            clickSearchButton();
+            selectItemsPerPage(String.valueOf(PAGE_SIZE));
+            totalPages = getTotalPages();
+        } finally {
+            if (driver != null) {
+                driver.quit();
+                driver = null;
+            }
+        }
+        checkCancelled();
+
+        List<PageRange> ranges = PageRange.split(startPage, totalPages, shards);
+        if (ranges.isEmpty()) {
+            notifyLog("❌ Стартовая страница " + startPage + " превышает общее количество страниц " + totalPages);
+            return;
+        }
+        notifyLog("🧩 Страницы " + startPage + "–" + totalPages + " делим на " + ranges.size() + " сессий: " + ranges);
+        // Журнал открываем до запуска сессий: журнал завершённого запуска очищается один раз, а не каждой сессией
+        openJournal();
+        closeJournal(false);
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger pagesDone = new AtomicInteger();
+        int pagesTotal = totalPages - startPage + 1;
+        PageSink<House> sink = new PageSink<>() {
+            @Override
+            public void accept(List<House> page, Runnable onSaved) {
+                mergeShardPage(page, onSaved, seen, duplicates, pagesDone, pagesTotal);
+            }
+
+            @Override
+            public void sync() {
+                syncOutput();
+            }
+        };
+
+        List<ShardListener> shardListeners = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        ExecutorService sessions = Executors.newFixedThreadPool(ranges.size());
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                PageRange range = ranges.get(i);
+                ShardListener shardListener = new ShardListener(listener, "Сессия " + (i + 1) + ", стр. " + range);
+                DomGosuslugiHousesParser shard = newShard(range, shardListener, sink);
+                shardListeners.add(shardListener);
+                futures.add(CompletableFuture.runAsync(shard::parseHouses, sessions));
+            }
+
+            // Сессии сами видят общий флаг отмены и сохраняют свои страницы — ждём, пока все закончат
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            while (true) {
+                try {
+                    all.get(1, TimeUnit.SECONDS);
+                    break;
+                } catch (java.util.concurrent.TimeoutException ignore) {
+                } catch (ExecutionException e) {
+                    notifyLog("❌ Сессия завершилась исключением: " + e.getCause());
+                    break;
+                }
+            }
+        } finally {
+            sessions.shutdown();
+        }
+
+        int failed = 0;
+        for (ShardListener shardListener : shardListeners) {
+            if (!shardListener.isSuccess()) {
+                failed++;
+                notifyLog("⚠️ Сессия завершилась с ошибкой: " + shardListener.getMessage());
+            }
+        }
+        notifyLog("🧩 Сессий завершено успешно: " + (shardListeners.size() - failed) + " из " + shardListeners.size()
+                + ", дублей отброшено: " + duplicates.get());
+        checkCancelled();
+        if (failed == 0) {
+            openJournal();
+            closeJournal(true);
+        }
+    }
+
+    private DomGosuslugiHousesParser newShard(PageRange range, ProgressListener shardListener, PageSink<House> sink) {
+        DomGosuslugiHousesParser shard = new DomGosuslugiHousesParser();
+        shard.setListener(shardListener);
+        shard.setCancellationFlag(cancelRequested);
+        shard.setRegion(region);
+        shard.setAskRegion(false);
+        shard.setEngine(engine);
+        shard.setBlockedResources(blockedResources);
+        shard.setStartPage(range.first());
+        shard.setEndPage(range.last());
+        shard.setPageSink(sink);
+        return shard;
+    }
+
+    // Страница от сессии-шарда: отбрасываем уже виденные дома и сохраняем остальное (запись в файл — по одной)
+    private synchronized void mergeShardPage(List<House> page, Runnable onSaved, Set<String> seen,
+                                             AtomicInteger duplicates, AtomicInteger pagesDone, int pagesTotal) {
+        for (House house : page) {
+            String key = house.getProfileUrl() != null && !house.getProfileUrl().isEmpty()
+                    ? house.getProfileUrl() : house.getAddress();
+            if (key == null || seen.add(key)) {
+                houses.add(house);
+            } else {
+                duplicates.incrementAndGet();
+            }
+        }
+        notifyPageProgress(pagesDone.incrementAndGet(), pagesTotal);
+        flushPage("Сохранение данных: страниц " + pagesDone.get() + " из " + pagesTotal + "...", onSaved);
+    }
+
+    // Прямой переход через scope пагинации; если он недоступен — листаем ссылками. true — страница открыта
+    private boolean goToPage(int pageNumber) throws InterruptedException {
+        throttle(RateGovernor.Stage.LIST);
+        readiness.markCardsStale(CARD_SELECTOR);
+        markSearch();
+        String jump = Pagination.jump(driver, pageNumber);
+        if (Pagination.JUMPED.equals(jump)) {
+            waitForPageLoad(pageNumber);
+            if (Integer.valueOf(pageNumber).equals(readiness.activePageNumber())) {
+                notifyLog("➡️ Переход на страницу " + pageNumber + " напрямую");
+                return true;
+            }
+        }
+        notifyLog("⚠️ Прямой переход на страницу " + pageNumber + " не удался (" + jump + "), листаем пагинацию");
+        readiness.forgetStaleCards();
+        stepToPage(pageNumber);
+        Integer actual = readiness.activePageNumber();
+        return actual != null && actual == pageNumber;
+    }
+
+    private void stepToPage(int pageNumber) throws InterruptedException {
         try {
             int choicePage = 1;
             int countingPage = pageNumber;
 
             while (countingPage > 2) {
                 waitForPageLoad(choicePage);
-                waitForModalToDisappear(); // Ждем исчезновения модального окна
-                sleep(1000);
 
                 WebElement pageLink = driver.findElement(By.xpath("//a[text()='" + (choicePage + 2) + "']"));
                 if (pageLink != null && pageLink.isEnabled()) {
                     ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", pageLink);
-                    sleep(1000);
 
                     // Кликаем через JavaScript чтобы обойти перехват клика
+                    throttle(RateGovernor.Stage.LIST);
+                    readiness.markCardsStale(CARD_SELECTOR);
+                    markSearch();
                     ((JavascriptExecutor) driver).executeScript("arguments[0].click();", pageLink);
 
                     countingPage -= 2;
@@ -426,22 +961,23 @@ public class DomGosuslugiHousesParser {
 
             if (countingPage == 2) {
                 waitForPageLoad(choicePage);
-                waitForModalToDisappear(); // Ждем исчезновения модального окна
-                sleep(1000);
 
                 WebElement pageLink = driver.findElement(By.xpath("//a[text()='" + (choicePage + 1) + "']"));
                 if (pageLink != null && pageLink.isEnabled()) {
                     ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", pageLink);
-                    sleep(1000);
 
                     // Кликаем через JavaScript
+                    throttle(RateGovernor.Stage.LIST);
+                    readiness.markCardsStale(CARD_SELECTOR);
+                    markSearch();
                     ((JavascriptExecutor) driver).executeScript("arguments[0].click();", pageLink);
-                    sleep(1000);
                 }
             }
 
+            waitForPageLoad(pageNumber);
             notifyLog("➡️ Переход на страницу " + pageNumber);
-            sleep(2000);
+        } catch (InterruptedException ie) {
+            throw ie;
         } catch (Exception e) {
             notifyLog("❌ Ошибка перехода на страницу " + pageNumber + ": " + e.getMessage());
         }
@@ -452,13 +988,14 @@ public class DomGosuslugiHousesParser {
             // Ждем исчезновения модального окна
             wait.until(ExpectedConditions.invisibilityOfElementLocated(
                     By.cssSelector(".modal-backdrop, .modal, [role='dialog']")));
-            sleep(500);
         } catch (Exception e) {
             // Если модального окна нет, просто продолжаем
         }
     }
 
-    private void waitForPageLoad(int expectedPage) {
+    // true — ожидаемая страница стала активной (карточки могли дозагрузиться не полностью)
+    private boolean waitForPageLoad(int expectedPage) {
+        boolean active = false;
         try {
             // Сначала ждем исчезновения модального окна
             waitForModalToDisappear();
@@ -471,17 +1008,16 @@ public class DomGosuslugiHousesParser {
                 // Игнорируем, если нет индикатора загрузки
             }
 
-            // Ждем появления карточек домов с таймаутом и проверкой количества
-            wait.until((WebDriver d) -> {
-                try {
-                    // Проверяем, что карточки загрузились и их достаточно
-                    List<WebElement> cards = driver.findElements(
-                            By.cssSelector(".register-card[ng-repeat*='house in searchResults.items']"));
-                    return !cards.isEmpty() && cards.size() >= 50; // Минимум 50 карточек
-                } catch (Exception e) {
-                    return false;
-                }
-            });
+            // Ждем, пока активная страница в пагинации станет ожидаемой
+            active = readiness.activePage(expectedPage, PageReadiness.PAGE_TIMEOUT);
+            if (!active) {
+                notifyLog("⚠️ Страница " + expectedPage + " не стала активной за " + PageReadiness.PAGE_TIMEOUT.toSeconds() + " сек");
+            }
+
+            // Ждем новые карточки вместо прежних и простоя $http
+            if (!readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT)) {
+                notifyLog("⚠️ Карточки домов не появились за " + PageReadiness.CARDS_TIMEOUT.toSeconds() + " сек");
+            }
 
             // Дополнительная проверка, что данные карточек загружены (не пустые адреса)
             wait.until((WebDriver d) -> {
@@ -501,23 +1037,11 @@ public class DomGosuslugiHousesParser {
                 }
             });
 
-            // Ждем, пока активная страница в пагинации станет ожидаемой
-            wait.until((WebDriver d) -> {
-                try {
-                    int currentPage = getCurrentPageNumber();
-                    return currentPage == expectedPage;
-                } catch (Exception e) {
-                    return false;
-                }
-            });
-
-            // Финальная задержка для полной стабилизации
-            sleep(2000);
-
         } catch (Exception e) {
             notifyLog("⚠️ Ожидание загрузки страницы " + expectedPage + " завершилось с ошибкой: " + e.getMessage());
             // Пробуем продолжить, возможно страница все же частично загружена
         }
+        return active;
     }
 
     private int getCurrentPageNumber() {
@@ -582,98 +1106,69 @@ public class DomGosuslugiHousesParser {
     }
 
     private void saveIntermediateResults() {
+        saveIntermediateResults(null);
+    }
+
+    // Сохранение страницы: записи уходят в поток записи журнала строк, обход идёт дальше.
+    // onSaved выполнится в потоке записи после сброса записей на диск (нечего сохранять — сразу)
+    private void saveIntermediateResults(Runnable onSaved) {
         if (houses.isEmpty()) {
+            if (onSaved != null) onSaved.run();
             return;
         }
 
         try {
-            String fileName = "Объекты жилищного фонда " + region + " " + LocalDate.now().getYear() + ".xlsx";
-            boolean fileExists = new File(fileName).exists();
-
-            Workbook workbook;
-            Sheet sheet;
-
-            if (fileExists) {
-                try (FileInputStream fis = new FileInputStream(fileName)) {
-                    workbook = new XSSFWorkbook(fis);
-                }
-                sheet = workbook.getSheet("Дома");
-                if (sheet == null) {
-                    sheet = workbook.createSheet("Дома");
-                    createHeaders(sheet, workbook);
-                }
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Дома");
-                createHeaders(sheet, workbook);
-            }
-
-            CellStyle defaultStyle = createDefaultStyle(workbook);
-            CellStyle linkStyle = createLinkStyle(workbook);
-            CreationHelper createHelper = workbook.getCreationHelper();
-
-            Map<String, Integer> existingHouses = new HashMap<>();
-            if (fileExists && sheet.getPhysicalNumberOfRows() > 1) {
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row != null && row.getCell(0) != null) {
-                        String houseAddress = row.getCell(0).getStringCellValue();
-                        if (houseAddress != null && !houseAddress.trim().isEmpty()) {
-                            existingHouses.put(houseAddress.trim(), i);
-                        }
-                    }
-                }
-            }
-
-            int newRowsCount = 0;
-            int updatedRowsCount = 0;
-
-            for (House house : houses) {
-                if (house.getAddress() == null || house.getAddress().trim().isEmpty()) {
-                    continue;
-                }
-
-                String houseAddress = house.getAddress().trim();
-                Integer existingRowIndex = existingHouses.get(houseAddress);
-
-                if (existingRowIndex != null) {
-                    updateHouseRow(sheet.getRow(existingRowIndex), house, defaultStyle, linkStyle, createHelper);
-                    updatedRowsCount++;
-                } else {
-                    int newRowIndex = sheet.getLastRowNum() + 1;
-                    Row row = sheet.createRow(newRowIndex);
-                    createHouseRow(row, house, defaultStyle, linkStyle, createHelper);
-                    newRowsCount++;
-                    existingHouses.put(houseAddress, newRowIndex);
-                }
-            }
-
-            // Авто-размер колонок
-            for (int i = 0; i < 6; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 512);
-            }
-
-            sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, 5));
-
-            try (FileOutputStream fos = new FileOutputStream(fileName)) {
-                workbook.write(fos);
-            }
-
-            workbook.close();
-
-            notifyLog("💾 Промежуточное сохранение: " + newRowsCount + " новых, " + updatedRowsCount + " обновлено");
-
+            rowWriter().publish(new ArrayList<>(houses), onSaved);
         } catch (IOException e) {
             cancelRequested.set(true);
             notifyLog("❌ Ошибка промежуточного сохранения: " + e.getMessage());
         }
+        houses.clear();
     }
 
-    private void cleanupMemory() {
-        houses.clear();
-        System.gc();
-        notifyLog("🧹 Память очищена");
+    // Ошибка записи останавливает обход так же, как отмена
+    private AsyncRowWriter<House> rowWriter() throws IOException {
+        if (rowWriter == null) {
+            rowWriter = new AsyncRowWriter<>(RowJournal.open(ResultExport.journalFor(outputBaseName()), ResultExport.HOUSES),
+                    ResultExport::houseRecord, this::notifyLog, () -> cancelRequested.set(true));
+        }
+        return rowWriter;
+    }
+
+    // Ждём, пока переданное на запись дошло до диска и отмечено в журнале прогресса (сессия-шард — у координатора)
+    private void syncOutput() {
+        if (pageSink != null) {
+            pageSink.sync();
+        } else if (rowWriter != null) {
+            rowWriter.sync();
+        }
+    }
+
+    // Новый обход региона (нечего продолжать): строки прошлого обхода в журнал не попадают
+    private void resetRowJournal() {
+        try {
+            rowWriter().reset();
+        } catch (IOException | IllegalStateException e) {
+            notifyLog("⚠️ Не удалось очистить журнал строк: " + e.getMessage());
+        }
+    }
+
+    // Этап выгрузки: поток записи дописывает очередь, журнал строк региона превращается в xlsx
+    private void finishOutput() {
+        if (rowWriter == null) return;
+        Path path = rowWriter.getPath();
+        try {
+            notifyStatus("Запись очереди сохранения...");
+            String report = rowWriter.close();
+            if (report != null) notifyLog(report);
+            notifyStatus("Сохранение в Excel...");
+            String summary = ResultExport.export(path);
+            if (summary != null) notifyLog(summary);
+        } catch (IOException e) {
+            notifyLog("❌ Ошибка сохранения в Excel (журнал строк сохранён: " + path + "): " + e.getMessage());
+        } finally {
+            rowWriter = null;
+        }
     }
 
     private void parseCurrentPage() throws InterruptedException {
@@ -689,46 +1184,18 @@ public class DomGosuslugiHousesParser {
             }
 
             // Ждем появления карточек домов с правильным селектором
-            wait.until(ExpectedConditions.presenceOfAllElementsLocatedBy(
-                    By.cssSelector(".register-card[ng-repeat*='house in searchResults.items']")));
-
-            sleep(2000);
-
-            List<House> pageHouses = new ArrayList<>();
-
-            int cardCount = driver.findElements(
-                    By.cssSelector(".register-card[ng-repeat*='house in searchResults.items']")).size();
-            notifyLog("Найдено карточек домов на странице: " + cardCount);
-
-            for (int i = 0; i < cardCount; i++) {
-                if (cancelRequested.get()) {
-                    notifyLog("⏹️ Отмена запрошена, прерываем парсинг карточек");
-                    break;
-                }
-
-                try {
-                    List<WebElement> currentCards = driver.findElements(
-                            By.cssSelector(".register-card[ng-repeat*='house in searchResults.items']"));
-
-                    if (currentCards.isEmpty()) {
-                        currentCards = driver.findElements(By.cssSelector(".register-card"));
-                    }
+            if (!readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT)) {
+                notifyLog("⚠️ Карточки домов не появились за " + PageReadiness.CARDS_TIMEOUT.toSeconds() + " сек");
+                return;
+            }
 
-                    if (i < currentCards.size()) {
-                        WebElement card = currentCards.get(i);
-                        House house = parseHouseCard(card);
-                        if (house != null && house.getAddress() != null && !house.getAddress().isEmpty()) {
-                            pageHouses.add(house);
-                            notifyLog("✅ Обработана карточка: " + house.getAddress());
-                        }
-                    }
-                } catch (Exception e) {
-                    if (e.getMessage().contains("stale element reference")) {
-                        notifyLog("❌ STALE ЭЛЕМЕНТ при парсинге карточки " + (i + 1) + ", пропускаем");
-                    } else {
-                        notifyLog("❌ Ошибка при парсинге карточки " + (i + 1) + ": " + e.getMessage());
-                    }
-                }
+            // Дома из перехваченного ответа, иначе все карточки одним скриптом, при сбое — поэлементно
+            List<House> pageHouses = capturedHouses();
+            if (pageHouses == null) {
+                pageHouses = extractHouseCards();
+            }
+            if (pageHouses == null) {
+                pageHouses = parseHouseCardsOneByOne();
             }
 
             if (pageHouses.isEmpty()) {
@@ -755,6 +1222,124 @@ public class DomGosuslugiHousesParser {
         }
     }
 
+    // Отметка перед кликом, меняющим список: ответы поиска до неё странице не подходят
+    private void markSearch() {
+        if (searchCapture != null) {
+            searchMark = searchCapture.mark();
+        }
+    }
+
+    // Ответ поиска именно этой страницы: номер и размер страницы в запросе (если они есть) совпадают.
+    // Тело читается асинхронно, поэтому запоздавший ответ прежней страницы может прийти после отметки
+    private boolean isSearchFor(XhrCapture.Response response, int page) {
+        if (!response.url().contains(SEARCH_MARKER)) return false;
+        String index = XhrCapture.queryParam(response.url(), "pageIndex");
+        String size = XhrCapture.queryParam(response.url(), "elementsPerPage");
+        long bodyIndex = JsonValues.number(response.json(), "pageIndex");
+        return (index == null || index.equals(String.valueOf(page)))
+                && (size == null || size.equals(String.valueOf(PAGE_SIZE)))
+                && (bodyIndex < 0 || bodyIndex == page);
+    }
+
+    private void startSearchCapture() {
+        try {
+            searchCapture = new XhrCapture(driver, SEARCH_MARKER);
+            searchMark = 0;
+            notifyLog("📡 Перехват ответов реестра через DevTools включён");
+        } catch (Exception e) {
+            notifyLog("⚠️ DevTools недоступен, карточки будут читаться со страницы: " + e.getMessage());
+        }
+    }
+
+    // Дома текущей страницы из перехваченного ответа поиска; null — перехват выключен или ответа нет
+    private List<House> capturedHouses() throws InterruptedException {
+        if (searchCapture == null) {
+            return null;
+        }
+        int page = currentPage;
+        Object response = searchCapture.awaitLatest(r -> isSearchFor(r, page), searchMark, CAPTURE_TIMEOUT);
+        searchMark = searchCapture.mark();
+        if (response == null) {
+            notifyLog("⚠️ Ответ поиска не перехвачен, читаем карточки со страницы");
+            return null;
+        }
+        List<House> result = HousesHttpEngine.housesFrom(response, BASE_URL);
+        if (result.isEmpty()) {
+            notifyLog("⚠️ В перехваченном ответе нет домов, читаем карточки со страницы");
+            return null;
+        }
+        notifyLog("📡 Карточки страницы из ответа реестра: " + result.size());
+        return result;
+    }
+
+    // Все карточки страницы за один вызов executeScript; null — если скрипт не сработал
+    private List<House> extractHouseCards() {
+        try {
+            Object raw = ((JavascriptExecutor) driver).executeScript(EXTRACT_CARDS_SCRIPT, CARD_SELECTOR);
+            if (!(raw instanceof List) || ((List<?>) raw).isEmpty()) {
+                notifyLog("⚠️ Пакетное чтение карточек не вернуло данных, разбираем поэлементно");
+                return null;
+            }
+
+            List<?> cards = (List<?>) raw;
+            notifyLog("Найдено карточек домов на странице: " + cards.size());
+
+            List<House> result = new ArrayList<>();
+            for (Object card : cards) {
+                if (!(card instanceof Map)) continue;
+                House house = HouseMapper.fromCardMap((Map<?, ?>) card, BASE_URL);
+                if (house.getAddress().isBlank()) {
+                    notifyLog("⚠️ Карточка дома без адреса пропущена");
+                } else {
+                    result.add(house);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            notifyLog("⚠️ Пакетное чтение карточек не удалось, разбираем поэлементно: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Запасной путь: каждая карточка через отдельные вызовы WebDriver
+    private List<House> parseHouseCardsOneByOne() {
+        List<House> pageHouses = new ArrayList<>();
+
+        int cardCount = driver.findElements(By.cssSelector(CARD_SELECTOR)).size();
+        notifyLog("Найдено карточек домов на странице: " + cardCount);
+
+        for (int i = 0; i < cardCount; i++) {
+            if (cancelRequested.get()) {
+                notifyLog("⏹️ Отмена запрошена, прерываем парсинг карточек");
+                break;
+            }
+
+            try {
+                List<WebElement> currentCards = driver.findElements(By.cssSelector(CARD_SELECTOR));
+
+                if (currentCards.isEmpty()) {
+                    currentCards = driver.findElements(By.cssSelector(".register-card"));
+                }
+
+                if (i < currentCards.size()) {
+                    WebElement card = currentCards.get(i);
+                    House house = parseHouseCard(card);
+                    if (house != null && house.getAddress() != null && !house.getAddress().isEmpty()) {
+                        pageHouses.add(house);
+                        notifyLog("✅ Обработана карточка: " + house.getAddress());
+                    }
+                }
+            } catch (Exception e) {
+                if (e.getMessage().contains("stale element reference")) {
+                    notifyLog("❌ STALE ЭЛЕМЕНТ при парсинге карточки " + (i + 1) + ", пропускаем");
+                } else {
+                    notifyLog("❌ Ошибка при парсинге карточки " + (i + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        return pageHouses;
+    }
+
     private House parseHouseCard(WebElement card) {
         try {
             House house = new House();
@@ -855,7 +1440,7 @@ public class DomGosuslugiHousesParser {
                     String typeCode = typeCodeObj != null ? typeCodeObj.toString() : "1";
 
                     if (guid != null && !guid.isEmpty()) {
-                        return BASE_URL + "/#!/house-view?guid=" + guid + "&typeCode=" + typeCode;
+                        return HouseMapper.profileUrl(BASE_URL, guid, typeCode);
                     }
                 }
             }
@@ -870,26 +1455,34 @@ public class DomGosuslugiHousesParser {
         return s == null ? "" : s.trim();
     }
 
-    private boolean goToNextPage() {
+    // Конец реестра — только отсутствие ссылки на следующую страницу; не открывшаяся страница и ошибки — сбой перехода
+    private PageTurn goToNextPage() throws InterruptedException {
         try {
             int currentPageNum = getCurrentPageNumber();
-            WebElement nextPage = driver.findElement(By.xpath("//a[text()='" + (currentPageNum + 1) + "']"));
-
-            if (nextPage != null && nextPage.isEnabled()) {
-                ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", nextPage);
-                sleep(1000);
-                nextPage.click();
-
-                // Ждем загрузки новой страницы с улучшенной проверкой
-                waitForPageLoad(currentPageNum + 1);
-
-                notifyLog("➡️ Переход на страницу " + (currentPageNum + 1));
-                return true;
+            List<WebElement> nextLinks = driver.findElements(By.xpath("//a[text()='" + (currentPageNum + 1) + "']"));
+            if (nextLinks.isEmpty() || !nextLinks.get(0).isEnabled()) {
+                return PageTurn.NO_NEXT_PAGE;
             }
-            return false;
+            WebElement nextPage = nextLinks.get(0);
+            ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", nextPage);
+            readiness.markCardsStale(CARD_SELECTOR);
+            markSearch();
+            // Лимит запросов — только когда переход действительно будет
+            throttle(RateGovernor.Stage.LIST);
+            nextPage.click();
+
+            // Ждем загрузки новой страницы с улучшенной проверкой
+            if (!waitForPageLoad(currentPageNum + 1)) {
+                return PageTurn.FAILED;
+            }
+
+            notifyLog("➡️ Переход на страницу " + (currentPageNum + 1));
+            return PageTurn.MOVED;
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("❌ Ошибка перехода на следующую страницу: " + e.getMessage());
-            return false;
+            return PageTurn.FAILED;
         }
     }
 
@@ -931,212 +1524,10 @@ public class DomGosuslugiHousesParser {
         }
     }
 
-    private void createHeaders(Sheet sheet, Workbook workbook) {
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-                "Адрес", "Год ввода в эксплуатацию", "Количество этажей",
-                "Управляющая организация", "Количество помещений\n(жилых/нежилых)", "Ссылка на карточку"
-        };
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-        }
-    }
-
-    private void createHouseRow(Row row, House house, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
-        setCellValue(row, 0, house.getAddress(), defaultStyle);
-        setCellValue(row, 0, house.getAddress(), defaultStyle);
-        setCellValue(row, 1, house.getCommissioningYear(), defaultStyle);
-        setCellValue(row, 2, house.getFloorsCount(), defaultStyle);
-        setCellValue(row, 3, house.getManagementOrganization(), defaultStyle);
-        setCellValue(row, 4, house.getPremisesCount(), defaultStyle);
-
-        Cell linkCell = row.createCell(5);
-        if (house.getProfileUrl() != null && !house.getProfileUrl().isEmpty()) {
-            linkCell.setCellValue("Открыть карточку");
-            Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
-            link.setAddress(house.getProfileUrl());
-            linkCell.setHyperlink(link);
-            linkCell.setCellStyle(linkStyle);
-        } else {
-            linkCell.setCellValue("Нет ссылки");
-            linkCell.setCellStyle(defaultStyle);
-        }
-    }
-
-    private void updateHouseRow(Row row, House house, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
-        setCellValue(row, 1, house.getCommissioningYear(), defaultStyle);
-        setCellValue(row, 2, house.getFloorsCount(), defaultStyle);
-        setCellValue(row, 3, house.getManagementOrganization(), defaultStyle);
-        setCellValue(row, 4, house.getPremisesCount(), defaultStyle);
-
-        Cell linkCell = row.getCell(5);
-        if (linkCell == null) {
-            linkCell = row.createCell(5);
-        }
-        if (house.getProfileUrl() != null && !house.getProfileUrl().isEmpty()) {
-            linkCell.setCellValue("Открыть карточку");
-            Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
-            link.setAddress(house.getProfileUrl());
-            linkCell.setHyperlink(link);
-            linkCell.setCellStyle(linkStyle);
-        } else {
-            linkCell.setCellValue("Нет ссылки");
-            linkCell.setCellStyle(defaultStyle);
-        }
-    }
-
-    private void setCellValue(Row row, int cellIndex, String value, CellStyle style) {
-        Cell cell = row.getCell(cellIndex);
-        if (cell == null) {
-            cell = row.createCell(cellIndex);
-        }
-        cell.setCellValue(value != null ? value : "");
-        cell.setCellStyle(style);
-    }
-
-    private CellStyle createHeaderStyle(Workbook workbook) {
-        CellStyle headerStyle = workbook.createCellStyle();
-        Font headerFont = workbook.createFont();
-        headerFont.setFontName("Times New Roman");
-        headerFont.setFontHeightInPoints((short) 12);
-        headerFont.setBold(true);
-        headerStyle.setFont(headerFont);
-        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        headerStyle.setWrapText(true);
-        headerStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return headerStyle;
-    }
-
-    private CellStyle createDefaultStyle(Workbook workbook) {
-        CellStyle defaultStyle = workbook.createCellStyle();
-        Font defaultFont = workbook.createFont();
-        defaultFont.setFontName("Times New Roman");
-        defaultFont.setFontHeightInPoints((short) 12);
-        defaultStyle.setFont(defaultFont);
-        defaultStyle.setWrapText(true);
-        defaultStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return defaultStyle;
-    }
-
-    private CellStyle createLinkStyle(Workbook workbook) {
-        CellStyle linkStyle = workbook.createCellStyle();
-        Font linkFont = workbook.createFont();
-        linkFont.setFontName("Times New Roman");
-        linkFont.setFontHeightInPoints((short) 12);
-        linkFont.setUnderline(Font.U_SINGLE);
-        linkFont.setColor(IndexedColors.BLUE.getIndex());
-        linkStyle.setFont(linkFont);
-        linkStyle.setWrapText(true);
-        linkStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return linkStyle;
-    }
-
+    // Остаток данных дописывается, xlsx собирается из журнала строк один раз
     private void saveToExcel() {
-        if (houses.isEmpty()) {
-            notifyLog("❌ Нет данных для сохранения");
-            return;
-        }
-
-        String fileName = "Объекты жилищного фонда " + region + " " + LocalDate.now().getYear() + ".xlsx";
-        boolean fileExists = new File(fileName).exists();
-
-        if (new File("Объекты жилищного фонда " + region + " " + LocalDate.now().minusYears(1).getYear() + ".xlsx").exists()) {
-            fileExists = true;
-            fileName = "Объекты жилищного фонда " + region + " " + LocalDate.now().minusYears(1).getYear() + ".xlsx";
-        } else if (new File("Объекты жилищного фонда " + region + " " + LocalDate.now().getYear() + ".xlsx").exists()) {
-            fileExists = true;
-        }
-
-        try {
-            Workbook workbook;
-            Sheet sheet;
-
-            if (fileExists) {
-                try (FileInputStream fis = new FileInputStream(fileName)) {
-                    workbook = new XSSFWorkbook(fis);
-                }
-                sheet = workbook.getSheet("Дома");
-                if (sheet == null) {
-                    sheet = workbook.createSheet("Дома");
-                    createHeaders(sheet, workbook);
-                }
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Дома");
-                createHeaders(sheet, workbook);
-            }
-
-            CellStyle defaultStyle = createDefaultStyle(workbook);
-            CellStyle linkStyle = createLinkStyle(workbook);
-
-            Map<String, Integer> existingHouses = new HashMap<>();
-            if (fileExists && sheet.getPhysicalNumberOfRows() > 1) {
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row != null && row.getCell(0) != null) {
-                        String houseAddress = row.getCell(0).getStringCellValue();
-                        if (houseAddress != null && !houseAddress.trim().isEmpty()) {
-                            existingHouses.put(houseAddress.trim(), i);
-                        }
-                    }
-                }
-            }
-
-            CreationHelper createHelper = workbook.getCreationHelper();
-            int newRowsCount = 0;
-            int updatedRowsCount = 0;
-
-            for (House house : houses) {
-                if (house.getAddress() == null || house.getAddress().trim().isEmpty()) {
-                    continue;
-                }
-
-                String houseAddress = house.getAddress().trim();
-                Integer existingRowIndex = existingHouses.get(houseAddress);
-
-                if (existingRowIndex != null) {
-                    updateHouseRow(sheet.getRow(existingRowIndex), house, defaultStyle, linkStyle, createHelper);
-                    updatedRowsCount++;
-                } else {
-                    int newRowIndex = sheet.getLastRowNum() + 1;
-                    Row row = sheet.createRow(newRowIndex);
-                    createHouseRow(row, house, defaultStyle, linkStyle, createHelper);
-                    newRowsCount++;
-                }
-            }
-
-            for (int i = 0; i < 6; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 512);
-            }
-
-            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    row.setHeight((short) -1);
-                }
-            }
-
-            sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, 5));
-
-            try (FileOutputStream fos = new FileOutputStream("Объекты жилищного фонда " + region + " " + LocalDate.now().getYear() + ".xlsx")) {
-                workbook.write(fos);
-            }
-
-            workbook.close();
-
-            notifyLog("💾 Данные " + (fileExists ? "обновлены" : "сохранены") + " в файл: " + fileName);
-            if (fileExists) {
-                notifyLog("📊 Обновлено: " + updatedRowsCount + " записей, Добавлено: " + newRowsCount + " новых записей");
-            }
-
-        } catch (IOException e) {
-            notifyLog("❌ Ошибка сохранения в Excel: " + e.getMessage());
-        }
+        saveIntermediateResults();
+        finishOutput();
     }
 
     public static void main(String[] args) {
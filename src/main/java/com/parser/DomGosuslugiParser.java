@@ -1,23 +1,10 @@
 package com.parser;
 
 import lombok.Setter;
-import org.apache.poi.common.usermodel.HyperlinkType;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.CreationHelper;
-import org.apache.poi.ss.usermodel.FillPatternType;
-import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.ss.usermodel.Hyperlink;
-import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.VerticalAlignment;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
@@ -28,33 +15,204 @@ import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
-import static java.lang.Thread.sleep;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class DomGosuslugiParser {
     private WebDriver driver;
     private WebDriverWait wait;
+    private PageReadiness readiness;
+    private XhrCapture searchCapture;
+    private long searchMark;
+    private DetailWorkerPool detailPool;
+    private DetailExecutor detailExecutor;
+    private ConcurrencyController detailController;
+    private DetailPipeline<Company> pipeline;
+    private CheckpointJournal journal;
+    // Поток записи журнала строк; поток-шард его читает при sync()
+    private volatile AsyncRowWriter<Company> rowWriter;
+    private CardSnapshots snapshots;
+    private ProfileCache profileCache;
+    private final AtomicInteger cacheHits = new AtomicInteger();
+    // Заготовки с неизменившейся карточкой: детали уже взяты из снимка, профиль не открываем
+    private final Set<Company> reusedCards = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    // Какой странице принадлежит заготовка в конвейере и сколько её карточек ещё не сохранено
+    private final Map<Company, Integer> pageOf = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<Integer, AtomicInteger> pagePending = new ConcurrentHashMap<>();
     private final List<Company> companies = new ArrayList<>();
 
     private static final String TARGET_URL = "https://dom.gosuslugi.ru/#!/organizations?orgType=1&orgType=19&orgType=22&orgType=21&orgType=20&doSearch=false&restore=false";
     private static final int TIMEOUT_SECONDS = 30;
     private static final String BASE_URL = "https://dom.gosuslugi.ru";
+    // Стартовое число потоков карточек и верхняя граница регулятора по умолчанию
+    private static final int DETAIL_WORKERS = 3;
+    private static final int DETAIL_WORKERS_MAX = 8;
+    private static final int WORKER_MAX_PAGES = 200;
+    // Повторы карточки: число попыток и экспоненциальная пауза между ними (с разбросом до +50%)
+    private static final int DETAIL_ATTEMPTS = 3;
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(2);
+    private static final Duration RETRY_BACKOFF_MAX = Duration.ofSeconds(30);
+    // Карточки, не загруженные и после повторов (общий файл для всех регионов)
+    private static final String DEAD_LETTER_FILE = "Ошибки карточек.jsonl";
+    private static final int PAGE_SIZE = 100;
+    // Сколько заготовок может ждать карточек (и сколько задач в работе): около страницы вперёд
+    private static final int PIPELINE_CAPACITY = PAGE_SIZE;
+    private static final int HTTP_CONCURRENCY = 6;
+    // Перехват XHR (движок CDP): какие ответы ловим и сколько ждём тело после отрисовки
+    private static final String SEARCH_MARKER = XhrCapture.pathOf(OrganizationsHttpEngine.SEARCH_PATH);
+    private static final String PROFILE_MARKER = XhrCapture.pathOf(OrganizationsHttpEngine.PROFILE_PATH);
+    private static final Duration CAPTURE_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String CARD_SELECTOR = "ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card";
+
+    // Все карточки страницы за один executeScript: те же селекторы, что в parseCompanyCard/findCardUrl
+    private static final String EXTRACT_CARDS_SCRIPT =
+            "var base = arguments[0];" +
+            "var txt = function (el) { return el ? (el.innerText || el.textContent || '').trim() : ''; };" +
+            "var abs = function (h) { return h && h.charAt(0) === '/' ? base + h : (h || ''); };" +
+            "var linkSelectors = [" +
+            "  \"a[ui-sref*='organization'][ui-sref-opts], a[ui-sref*='organization']\"," +
+            "  \"a[ui-state*='organization']\"," +
+            "  \"a[ng-href*='/#!/organization'], a[ng-href*='organization']\"," +
+            "  \"a[href*='/#!/organization'], a[href*='organizationView'], a[href*='/organization/']\"" +
+            "];" +
+            "var cards = document.querySelectorAll(arguments[1]);" +
+            "var out = [];" +
+            "for (var i = 0; i < cards.length; i++) {" +
+            "  var card = cards[i];" +
+            "  var name = txt(card.querySelector('.register-card__header-title'));" +
+            "  var header = card.querySelector('.register-card__header-title a, .register-card__header a, a.register-card__title');" +
+            "  if (header && txt(header)) name = txt(header);" +
+            "  var url = '';" +
+            "  for (var s = 0; s < linkSelectors.length && !url; s++) {" +
+            "    var a = card.querySelector(linkSelectors[s]);" +
+            "    if (a) url = abs(a.href || a.getAttribute('ng-href'));" +
+            "  }" +
+            "  if (!url) {" +
+            "    var anchors = card.querySelectorAll('a');" +
+            "    for (var m = 0; m < anchors.length && !url; m++) {" +
+            "      var t = anchors[m].textContent || '';" +
+            "      if (t.indexOf('Подробнее') >= 0 || t.indexOf('Перейти') >= 0) url = abs(anchors[m].href);" +
+            "    }" +
+            "  }" +
+            "  var roles = [];" +
+            "  var roleItems = card.querySelectorAll(\"[ng-repeat='role in organization.nsiOrganizationRoles'] .ng-binding\");" +
+            "  for (var r = 0; r < roleItems.length; r++) roles.push(txt(roleItems[r]));" +
+            "  var site = card.querySelector(\"a[ng-href^='http'], a[href^='http']\");" +
+            "  var rows = [];" +
+            "  var trs = card.querySelectorAll('.register-card__table tr');" +
+            "  for (var k = 0; k < trs.length; k++) {" +
+            "    var tds = trs[k].querySelectorAll('td');" +
+            "    if (tds.length >= 2) rows.push([txt(tds[0]), txt(tds[1])]);" +
+            "  }" +
+            "  out.push({name: name, profileUrl: url, roles: roles," +
+            "            siteText: txt(site), siteHref: site ? site.href : '', rows: rows});" +
+            "}" +
+            "return out;";
+
+    /*
+     * Все блоки карточки организации за один executeAsyncScript: раскрываем "Дополнительная информация",
+     * ждём простоя $http и затишья DOM (MutationObserver), затем читаем те же привязки, что
+     * parseReceptionBeforeHours / parseReceptionInfo / parseDirectorInfo / parseEmailInfo / parseNotesInfo.
+     */
+    private static final String DETAIL_BLOCKS_SCRIPT =
+            "var timeoutMs = arguments[0];" +
+            "var done = arguments[arguments.length - 1];" +
+            "var txt = function (el) { return el ? (el.innerText || el.textContent || '').trim() : ''; };" +
+            "var first = function (scope, css) { return txt(scope.querySelector(css)); };" +
+            "var xpathAll = function (xp, ctx) {" +
+            "  var r = document.evaluate(xp, ctx || document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+            "  var out = []; for (var i = 0; i < r.snapshotLength; i++) out.push(r.snapshotItem(i)); return out;" +
+            "};" +
+            "var visible = function (el) { return !!(el.offsetWidth || el.offsetHeight || el.getClientRects().length); };" +
+            "var idle = function () {" +
+            "  try { var inj = window.angular && angular.element(document.body).injector();" +
+            "        return !inj || inj.get('$http').pendingRequests.length === 0; } catch (e) { return true; }" +
+            "};" +
+            "var expanded = false;" +
+            "var buttons = xpathAll(\"//*[contains(text(), 'Дополнительная информация')]\");" +
+            "for (var b = 0; b < buttons.length && !expanded; b++) {" +
+            "  if (visible(buttons[b])) { try { buttons[b].click(); expanded = true; } catch (e) {} }" +
+            "}" +
+            "var extract = function () {" +
+            "  var res = {expanded: expanded};" +
+            "  var rec = document.querySelector('ef-ppa-di-citizen-reception-info');" +
+            "  if (rec && rec.querySelector('ef-ppa-di-block[header-text], .info-card__table')) {" +
+            "    var phones = [];" +
+            "    var ps = rec.querySelectorAll(\"ef-ppa-di-phone [ng-repeat='onePhone in data'] span[ng-bind='onePhone.value | phone']\");" +
+            "    for (var p = 0; p < ps.length; p++) phones.push(txt(ps[p]));" +
+            "    res.reception = {" +
+            "      person: first(rec, \".info-card__val span[ng-bind='$dataItem.employeePosition']\")," +
+            "      address: first(rec, \".info-card__val span[ng-bind$='| addressFormatter']\")," +
+            "      phones: phones};" +
+            "  }" +
+            "  var sheet = rec && rec.querySelector(\"ef-ppa-di-hours-sheet[alt-markup='true']\");" +
+            "  var table = sheet && sheet.querySelector('table.table.table-entity');" +
+            "  if (table) {" +
+            "    res.hours = [];" +
+            "    var trs = table.querySelectorAll('tbody > tr');" +
+            "    for (var t = 0; t < trs.length; t++) {" +
+            "      var row = trs[t];" +
+            "      var day = row.querySelector(\"td.table-entity_cell_dark span[ng-bind^='days[']\");" +
+            "      if (!day || !row.querySelector('td')) continue;" +
+            "      res.hours.push({day: txt(day)," +
+            "        begin: first(row, \"td:nth-of-type(2) span[ng-bind='openingHours.openHours.beginDate']\")," +
+            "        end: first(row, \"td:nth-of-type(2) span[ng-bind='openingHours.openHours.endDate']\")," +
+            "        breakBegin: first(row, \"td:nth-of-type(3) span[ng-bind='openingHours.breakHours.beginDate']\")," +
+            "        breakEnd: first(row, \"td:nth-of-type(3) span[ng-bind='openingHours.breakHours.endDate']\")," +
+            "        comment: first(row, \"span[ng-bind='openingHours.comment']\")});" +
+            "    }" +
+            "  }" +
+            "  res.fio = first(document, \"div.info-card__val[ng-bind='$dataItem.fio'], div[ng-bind='$dataItem.fio']\");" +
+            "  res.position = first(document, \"div.info-card__val[ng-bind='$dataItem.position'], div[ng-bind='$dataItem.position']\");" +
+            "  res.email = first(document, \"span[ng-bind='data.orgEmail']\");" +
+            "  var dayOnly = /^(понедельник|вторник|среда|четверг|пятница|суббота|воскресенье)$/;" +
+            "  var fields = ['Примечание', 'Дополнительная информация', 'Особые условия', 'Комментарий'];" +
+            "  res.notes = [];" +
+            "  for (var f = 0; f < fields.length; f++) {" +
+            "    var labels = xpathAll(\"//*[contains(text(), '\" + fields[f] + \"')]\");" +
+            "    for (var l = 0; l < labels.length; l++) {" +
+            "      var val = xpathAll(\"./following-sibling::div[contains(@class, 'info-card_val')] | \" +" +
+            "          \"./ancestor::tr[1]//div[contains(@class, 'info-card_val')] | ./following::span[1] | ./following::div[1]\", labels[l])[0];" +
+            "      var v = txt(val);" +
+            "      if (v && !dayOnly.test(v.toLowerCase())) { res.notes.push(v); break; }" +
+            "    }" +
+            "  }" +
+            "  return res;" +
+            "};" +
+            "var deadline = Date.now() + timeoutMs;" +
+            "var lastChange = Date.now();" +
+            "var observer = new MutationObserver(function () { lastChange = Date.now(); });" +
+            "observer.observe(document.body, {childList: true, subtree: true, characterData: true});" +
+            "(function poll() {" +
+            "  if ((idle() && Date.now() - lastChange >= 300) || Date.now() > deadline) {" +
+            "    observer.disconnect();" +
+            "    try { done(extract()); } catch (e) { done(null); }" +
+            "  } else {" +
+            "    setTimeout(poll, 100);" +
+            "  }" +
+            "})();";
+    private static final int DETAIL_SCRIPT_TIMEOUT_MS = 10000;
 
     private int startPage = 1;
     private int currentPage = 1;
@@ -64,11 +222,79 @@ public class DomGosuslugiParser {
     @Setter
     private String region = "Санкт-Петербург";
     private AtomicBoolean cancelRequested = new AtomicBoolean(false);
+    // Верхняя граница потоков (и браузеров) для карточек; GUI меняет значение во время работы
+    private AtomicInteger detailConcurrency = new AtomicInteger(DETAIL_WORKERS_MAX);
+    @Setter
+    private DetailNavigation detailNavigation = DetailNavigation.IN_APP;
+    @Setter
+    private ParserEngine engine = ParserEngine.SELENIUM;
+    // Какие ресурсы браузеры не загружают (CDP Network.setBlockedURLs)
+    @Setter
+    private Set<ResourceBlocker.Category> blockedResources = ResourceBlocker.configuredCategories();
+    private final ResourceBlocker.Stats resourceStats = new ResourceBlocker.Stats();
+    // Сколько навигации этой сессии простояли в ожидании общего лимита запросов
+    private final RateGovernor.Delays rateDelays = new RateGovernor.Delays();
+    private final DeadLetterFile deadLetters = new DeadLetterFile(Path.of(DEAD_LETTER_FILE));
+    private final AtomicInteger deadLettered = new AtomicInteger();
+    private final Set<String> deadLetteredUrls = ConcurrentHashMap.newKeySet();
+    // Режим "только повтор": вместо обхода реестра заново загружаем карточки из файла ошибок
+    @Setter
+    private boolean retryDeadLetters = false;
+    // Повторный обход: профиль открываем только для новых и изменившихся в списке организаций
+    @Setter
+    private boolean incremental = true;
+    // Максимальный возраст данных профиля из кэша на этот запуск; null — срок годности кэша, 0 — всё заново
+    @Setter
+    private Duration cacheMaxAge;
+    // Адрес JSON-бэкенда для HTTP-движка; -Dgosuslugi.api.url=http://localhost:8089 — локальный сервер с записанными ответами
+    @Setter
+    private String apiBaseUrl = System.getProperty("gosuslugi.api.url", BASE_URL);
+    // Шардирование: число независимых сессий браузера, между которыми делится диапазон страниц
+    @Setter
+    private int shards = 1;
+    // Последняя страница диапазона (включительно) для сессии-шарда
+    @Setter
+    private int endPage = Integer.MAX_VALUE;
+    // false — регион уже задан через region, диалог выбора не показываем
+    @Setter
+    private boolean askRegion = true;
+    // Получатель готовых страниц вместо собственного сохранения (сессия-шард отдаёт их координатору)
+    @Setter
+    private PageSink<Company> pageSink;
+    // Пакетный режим: несколько регионов за запуск, одновременно не больше regionConcurrency
+    @Setter
+    private boolean multiRegion = false;
+    @Setter
+    private int regionConcurrency = 2;
+
+    // Как открывать карточки организаций в браузерах пула
+    public enum DetailNavigation {
+        // Каждая карточка в новой вкладке через window.open (приложение загружается заново)
+        NEW_TAB,
+        // Одна вкладка с загруженным приложением, переход сменой hash-маршрута
+        IN_APP
+    }
 
     public void setCancellationFlag(AtomicBoolean cancelRequested) {
         this.cancelRequested = (cancelRequested != null) ? cancelRequested : new AtomicBoolean(false);
     }
 
+    // Разрешение общего ограничителя частоты перед навигацией; ожидание копится для отчёта по странице
+    private void throttle(RateGovernor.Stage stage) throws InterruptedException {
+        RateGovernor.shared().acquire(stage, rateDelays);
+    }
+
+    private void reportRateDelays(RateGovernor.Delays delays) {
+        String report = delays.drainReport();
+        if (report != null) notifyLog(report);
+        int hits = cacheHits.getAndSet(0);
+        if (hits > 0) notifyLog("💾 Профилей из кэша: " + hits);
+    }
+
+    public void setDetailConcurrency(AtomicInteger detailConcurrency) {
+        this.detailConcurrency = (detailConcurrency != null) ? detailConcurrency : new AtomicInteger(DETAIL_WORKERS_MAX);
+    }
+
     private void notifyStatus(String text) {
         if (listener != null) listener.onStatus(text);
         System.out.println(text);
@@ -99,33 +325,56 @@ public class DomGosuslugiParser {
 
     public void parseOrganizations() {
         try {
-            checkSeleniumSetup();
-
-            notifyStatus("Запуск драйвера...");
-            initDriver();
-            notifyLog("🚀 Запуск парсера управляющих компаний...");
-
-            driver.get(TARGET_URL);
-            wait.until(ExpectedConditions.presenceOfElementLocated(By.cssSelector("body")));
-            sleep(5000);
-            checkCancelled();
+            if (retryDeadLetters) {
+                String summary = retryDeadLetterFile();
+                notifyFinished(true, summary);
+                return;
+            }
+            if (multiRegion && askRegion) {
+                // Пакет успешен, если обработан хотя бы один регион
+                RegionBatch.Result result = parseRegionsBatch();
+                notifyFinished(!result.succeeded().isEmpty(), result.summary());
+                return;
+            }
+            if (engine == ParserEngine.HTTP) {
+                parseOrganizationsHttp();
+            } else if (shards > 1 && pageSink == null) {
+                parseOrganizationsSharded();
+            } else {
+                checkSeleniumSetup();
 
-            selectRegionFilter();
-            //selectSpbFilter();
-            checkCancelled();
+                notifyStatus("Запуск драйвера...");
+                initDriver();
+                if (engine == ParserEngine.CDP) {
+                    startSearchCapture();
+                }
+                startDetailWorkers();
+                notifyLog("🚀 Запуск парсера управляющих компаний...");
+                notifyLog(RateGovernor.shared().describe());
+
+                throttle(RateGovernor.Stage.LIST);
+                driver.get(TARGET_URL);
+                if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                    notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+                }
+                checkCancelled();
 
-            clickSearchButton();
-            sleep(1000);
-            checkCancelled();
+                selectRegionFilter();
+                //selectSpbFilter();
+                checkCancelled();
 
-            selectItemsPerPage("100");
+                throttle(RateGovernor.Stage.LIST);
+                clickSearchButton();
+                checkCancelled();
 
-            parseAllPages(startPage);
+                selectItemsPerPage(String.valueOf(PAGE_SIZE));
 
-            notifyLog("📊 Всего найдено компаний: " + companies.size());
+                parseAllPages(startPage);
+            }
 
-            notifyStatus("Сохранение в Excel...");
-            saveToExcel();
+            if (pageSink == null) {
+                saveToExcel();
+            }
 
             notifyFinished(true, "Успешно: сохранено " + companies.size() + " записей");
         } catch (InterruptedException ie) {
@@ -135,6 +384,20 @@ public class DomGosuslugiParser {
             notifyLog("❌ Ошибка при парсинге: " + e.getMessage());
             notifyFinished(false, "Ошибка: " + e.getMessage());
         } finally {
+            // После отмены или ошибки сохраняем то, что успели собрать
+            finishOutput();
+            if (detailExecutor != null) {
+                detailExecutor.close();
+                detailExecutor = null;
+            }
+            if (detailPool != null) {
+                detailPool.close();
+                detailPool = null;
+            }
+            if (searchCapture != null) {
+                searchCapture.close();
+                searchCapture = null;
+            }
             if (driver != null) {
                 driver.quit();
                 notifyLog("🔴 Браузер закрыт");
@@ -142,6 +405,276 @@ public class DomGosuslugiParser {
         }
     }
 
+    // Тот же цикл по страницам, но через JSON-бэкенд без браузера
+    private void parseOrganizationsHttp() throws IOException, InterruptedException {
+        try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiBaseUrl, OrganizationsHttpEngine.STATE_GUID, HTTP_CONCURRENCY)) {
+            OrganizationsHttpEngine http = new OrganizationsHttpEngine(client, this::notifyLog);
+            notifyLog("🌐 Запуск парсера управляющих компаний (HTTP, без браузера): " + client.getBaseUrl());
+            notifyLog(RateGovernor.shared().describe());
+
+            notifyStatus("Загрузка списка регионов...");
+            Map<String, String> regions = client.fetchRegions();
+            String selectedRegion = askRegion && listener != null
+                    ? listener.showRegionSelectionDialog(new ArrayList<>(regions.keySet()))
+                    : region;
+            if (selectedRegion == null) {
+                throw new InterruptedException("Пользователь отменил выбор региона");
+            }
+            String regionCode = regions.get(selectedRegion);
+            if (regionCode == null) {
+                notifyLog("⚠️ Регион '" + selectedRegion + "' не найден в справочнике, поиск без фильтра по региону");
+            } else {
+                region = selectedRegion;
+                notifyLog("✅ Выбран регион: " + selectedRegion);
+            }
+
+            openJournal();
+            loadSnapshots();
+            openProfileCache();
+            int firstPage = resumeFromJournal(startPage);
+
+            OrganizationsHttpEngine.Page page = http.search(regionCode, firstPage, PAGE_SIZE);
+            int totalPages = page.total() > 0 ? (int) ((page.total() + PAGE_SIZE - 1) / PAGE_SIZE) : firstPage;
+            notifyLog("Общее количество страниц: " + totalPages);
+
+            boolean reachedEnd = true;
+            try {
+                for (currentPage = firstPage; currentPage <= totalPages; currentPage++) {
+                    checkCancelled();
+                    notifyPageProgress(currentPage, totalPages);
+                    notifyLog("📄 Обработка страницы " + currentPage + " из " + totalPages);
+
+                    if (currentPage != firstPage) {
+                        page = http.search(regionCode, currentPage, PAGE_SIZE);
+                    }
+                    if (page.companies().isEmpty()) {
+                        notifyLog("✅ Достигнута последняя страница");
+                        break;
+                    }
+
+                    List<Company> pageCompanies = skipJournaled(page.companies());
+                    List<Company> changed = new ArrayList<>(pageCompanies);
+                    changed.removeAll(reuseSnapshots(pageCompanies));
+                    changed.removeIf(this::applyCachedProfile);
+                    Set<Company> failed = enrichHttp(http, changed);
+                    for (Company company : changed) {
+                        if (failed.contains(company)) continue;
+                        // Снимок и кэш сами берут только карточки с деталями
+                        rememberSnapshot(company);
+                        cacheProfile(company);
+                    }
+                    companies.addAll(pageCompanies);
+                    notifyLog("🎯 Парсинг страницы " + currentPage + " завершен");
+                    reportRateDelays(client.getRateDelays());
+
+                    // Запись идёт в своём потоке; страница отмечается в журнале, когда её строки на диске.
+                    // Не загруженные карточки в журнал не идут, а страница с ними не считается сохранённой —
+                    // при продолжении их профили запросят снова
+                    notifyStatus("Сохранение данных страницы " + currentPage + "...");
+                    int savedPage = currentPage;
+                    List<Company> loaded = new ArrayList<>(pageCompanies);
+                    loaded.removeIf(failed::contains);
+                    saveIntermediateResults(() -> {
+                        journalCompanies(loaded);
+                        if (failed.isEmpty()) journalPage(savedPage);
+                    });
+                }
+            } catch (InterruptedException ie) {
+                reachedEnd = false;
+                if (!companies.isEmpty()) {
+                    notifyStatus("Сохранение данных перед остановкой...");
+                    saveIntermediateResults();
+                }
+                throw ie;
+            } finally {
+                closeJournal(reachedEnd);
+            }
+        }
+    }
+
+    /**
+     * Профили страницы через HTTP с теми же повторами, что и в браузере: повторяемые ошибки — ещё раз
+     * после паузы, остальные и исчерпавшие попытки — в файл ошибок. Возвращает не загруженные карточки.
+     */
+    private Set<Company> enrichHttp(OrganizationsHttpEngine http, List<Company> changed) throws InterruptedException {
+        Set<Company> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Company, DetailFailure> failures = http.enrich(changed, cancelRequested);
+        for (int attempt = 1; !failures.isEmpty(); attempt++) {
+            if (cancelRequested.get()) {
+                failed.addAll(failures.keySet());
+                break;
+            }
+            List<Company> retry = new ArrayList<>();
+            for (Map.Entry<Company, DetailFailure> entry : failures.entrySet()) {
+                if (!entry.getValue().isRetryable() || attempt >= DETAIL_ATTEMPTS) {
+                    deadLetter(entry.getKey(), entry.getValue(), attempt);
+                    failed.add(entry.getKey());
+                } else {
+                    retry.add(entry.getKey());
+                }
+            }
+            if (retry.isEmpty()) break;
+            Duration delay = retryBackoff(attempt);
+            notifyLog("🔁 Повтор карточек: " + retry.size() + ", попытка " + (attempt + 1) + " из " + DETAIL_ATTEMPTS
+                    + " через " + delay.toMillis() / 1000.0 + " с");
+            DetailExecutor.pause(delay, cancelRequested::get);
+            failures = http.enrich(retry, cancelRequested);
+        }
+        return failed;
+    }
+
+    // Журнал прогресса для текущего региона; без него запуск идёт как обычно, только без продолжения
+    private void openJournal() {
+        try {
+            journal = CheckpointJournal.open(outputBaseName());
+            if (journal.hasProgress()) {
+                notifyLog("📒 Журнал " + journal.getPath().getFileName() + ": сохранено страниц " + journal.completedPages()
+                        + ", карточек " + journal.completedCompanies());
+            }
+        } catch (IOException e) {
+            journal = null;
+            notifyLog("⚠️ Журнал прогресса недоступен, продолжение после сбоя не сработает: " + e.getMessage());
+        }
+        if (pageSink == null && (journal == null || !journal.hasProgress())) {
+            resetRowJournal();
+        }
+    }
+
+    // Снимки карточек прошлого обхода региона; без них все профили загружаются заново
+    private void loadSnapshots() {
+        snapshots = null;
+        if (!incremental) return;
+        try {
+            snapshots = CardSnapshots.load("Управляющие компании " + region);
+            if (snapshots.size() > 0) {
+                notifyLog("🔍 Снимков карточек с прошлого обхода: " + snapshots.size() + " — неизменившиеся профили не загружаем");
+            }
+        } catch (IOException e) {
+            notifyLog("⚠️ Снимки карточек недоступны, загружаем все профили: " + e.getMessage());
+        }
+    }
+
+    // Карточки, не изменившиеся с прошлого обхода: детали берём из снимка. Возвращает их список
+    private List<Company> reuseSnapshots(List<Company> pageCompanies) {
+        List<Company> unchanged = new ArrayList<>();
+        if (snapshots == null) return unchanged;
+        for (Company company : pageCompanies) {
+            if (snapshots.applyIfUnchanged(company)) unchanged.add(company);
+        }
+        if (!unchanged.isEmpty()) {
+            notifyLog("🔍 Без изменений, детали из прошлого обхода: " + unchanged.size() + " из " + pageCompanies.size());
+        }
+        return unchanged;
+    }
+
+    // Снимок только с деталями: разбор страницы глотает ошибки блоков, и пустой профиль иначе
+    // переиспользовался бы во всех следующих обходах
+    private void rememberSnapshot(Company company) {
+        if (snapshots == null || !CompanyMapper.hasDetails(company)) return;
+        try {
+            snapshots.record(company);
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи снимка карточки: " + e.getMessage());
+        }
+    }
+
+    private void openProfileCache() {
+        profileCache = null;
+        try {
+            profileCache = ProfileCache.shared();
+            notifyLog(profileCache.describe() + (cacheMaxAge != null
+                    ? " (на этот запуск — не старше " + cacheMaxAge.toDays() + " дн.)" : ""));
+        } catch (IOException e) {
+            notifyLog("⚠️ Кэш профилей недоступен, загружаем все профили: " + e.getMessage());
+        }
+    }
+
+    // Детали из кэша профилей, если запись не старше допустимого возраста
+    private boolean applyCachedProfile(Company company) {
+        if (profileCache == null) return false;
+        Map<String, String> details = profileCache.get(company.getProfileUrl(), cacheMaxAge);
+        if (details == null) return false;
+        CardSnapshots.applyDetails(company, details);
+        cacheHits.incrementAndGet();
+        return true;
+    }
+
+    // Пустой профиль не кэшируем: иначе он выдавался бы весь срок годности, а попадание в кэш стало бы снимком
+    private void cacheProfile(Company company) {
+        if (profileCache == null || !CompanyMapper.hasDetails(company)) return;
+        try {
+            profileCache.put(company.getProfileUrl(), CardSnapshots.details(company));
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи в кэш профилей: " + e.getMessage());
+        }
+    }
+
+    // Первая страница, которой нет в журнале
+    private int resumeFromJournal(int from) {
+        int page = journal != null ? journal.resumePage(from) : from;
+        if (page != from) {
+            notifyLog("📒 Продолжаем по журналу со страницы " + page);
+        }
+        return page;
+    }
+
+    // Карточки, уже загруженные и сохранённые по журналу, заново не загружаем
+    private List<Company> skipJournaled(List<Company> pageCompanies) {
+        if (journal == null) return pageCompanies;
+        List<Company> rest = new ArrayList<>();
+        for (Company company : pageCompanies) {
+            if (!journal.isCompanyDone(company.getProfileUrl())) rest.add(company);
+        }
+        if (rest.size() < pageCompanies.size()) {
+            notifyLog("📒 Пропущено уже сохранённых карточек: " + (pageCompanies.size() - rest.size()));
+        }
+        return rest;
+    }
+
+    // В журнал попадает только сохранённое до отмены: после отмены карточки сохраняются без деталей
+    private void journalCompanies(List<Company> saved) {
+        if (journal == null || cancelRequested.get()) return;
+        List<String> urls = new ArrayList<>();
+        for (Company company : saved) {
+            urls.add(company.getProfileUrl());
+        }
+        try {
+            journal.companiesDone(urls);
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи журнала: " + e.getMessage());
+        }
+    }
+
+    private void journalPage(int page) {
+        if (journal == null || cancelRequested.get()) return;
+        try {
+            journal.pageDone(page);
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи журнала: " + e.getMessage());
+        }
+    }
+
+    // Весь реестр пройден — отмечаем конец, следующий запуск начнётся с начала (сессия-шард этого не решает)
+    private void closeJournal(boolean reachedEnd) {
+        if (journal == null) return;
+        syncOutput();
+        try {
+            if (reachedEnd && !cancelRequested.get() && pageSink == null && endPage == Integer.MAX_VALUE) {
+                journal.finish();
+                notifyLog("📒 Регион пройден полностью, журнал закрыт");
+            }
+            journal.close();
+        } catch (IOException e) {
+            notifyLog("⚠️ Ошибка записи журнала: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    // Имя выходного файла без расширения; журнал прогресса лежит рядом с ним
+    private String outputBaseName() {
+        return "Управляющие компании " + region + " " + LocalDate.now().getYear();
+    }
+
     public void initDriver() {
         try {
             String chromeDriverPath = "chromedriver.exe";
@@ -160,8 +693,10 @@ public class DomGosuslugiParser {
         }
 
         try {
-            driver = new ChromeDriver(createChromeOptions());
+            notifyLog("🛡️ Блокируемые ресурсы: " + ResourceBlocker.describe(blockedResources));
+            driver = newChromeDriver();
             wait = new WebDriverWait(driver, Duration.ofSeconds(TIMEOUT_SECONDS));
+            readiness = new PageReadiness(driver);
             notifyLog("🚀 Драйвер успешно инициализирован");
         } catch (Exception e) {
             notifyLog("❌ Ошибка инициализации драйвера: " + e.getMessage());
@@ -169,6 +704,17 @@ public class DomGosuslugiParser {
         }
     }
 
+    // Браузер с политикой блокировки ресурсов; без DevTools работаем без неё
+    private ChromeDriver newChromeDriver() {
+        ChromeDriver chrome = new ChromeDriver(createChromeOptions());
+        try {
+            ResourceBlocker.apply(chrome, blockedResources, resourceStats);
+        } catch (Exception e) {
+            notifyLog("⚠️ Блокировка ресурсов не включена: " + e.getMessage());
+        }
+        return chrome;
+    }
+
     private ChromeOptions createChromeOptions() {
         ChromeOptions options = new ChromeOptions();
         options.addArguments("--headless=new");
@@ -181,8 +727,6 @@ public class DomGosuslugiParser {
         options.addArguments("--remote-allow-origins=*");
         options.addArguments("--disable-extensions");
         options.addArguments("--disable-plugins");
-        options.addArguments("--disable-images");
-        options.addArguments("--disable-javascript");
         options.addArguments("--memory-pressure-off");
         return options;
     }
@@ -210,7 +754,9 @@ public class DomGosuslugiParser {
                         .map(WebElement::getText)
                         .toList();
 
-                String selectedRegion = listener.showRegionSelectionDialog(regions);
+                String selectedRegion = askRegion && listener != null
+                        ? listener.showRegionSelectionDialog(regions)
+                        : region;
 
                 if (selectedRegion == null) {
                     throw new InterruptedException("Пользователь отменил выбор региона");
@@ -222,6 +768,7 @@ public class DomGosuslugiParser {
                     if (option.getText().contains(selectedRegion)) {
                         dropdown.selectByVisibleText(option.getText());
                         regionFound = true;
+                        region = selectedRegion;
                         notifyLog("✅ Выбран регион: " + selectedRegion);
                         break;
                     }
@@ -235,7 +782,7 @@ public class DomGosuslugiParser {
                     }
                 }
             }
-            sleep(1000);
+            readiness.settled();
         } catch (Exception e) {
             notifyLog("❌ Ошибка выбора региона: " + e.getMessage());
         }
@@ -253,7 +800,7 @@ public class DomGosuslugiParser {
                     }
                 }
             }
-            sleep(1000);
+            readiness.settled();
         } catch (Exception e) {
             notifyLog("Ошибка выбора фильтра: " + e.getMessage());
         }
@@ -265,8 +812,12 @@ public class DomGosuslugiParser {
             WebElement button = driver.findElement(By.cssSelector("button[type='submit'][class*='btn-prime']"));
 
             // Простой клик без лишних проверок
+            readiness.markCardsStale(CARD_SELECTOR);
+            markSearch();
             ((JavascriptExecutor) driver).executeScript("arguments[0].click();", button);
-            sleep(1000);
+            if (!readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT)) {
+                notifyLog("⚠️ Результаты поиска не появились за " + PageReadiness.CARDS_TIMEOUT.toSeconds() + " сек");
+            }
 
         } catch (Exception e) {
             notifyLog("❌ Ошибка при нажатии кнопки 'Найти': " + e.getMessage());
@@ -307,14 +858,17 @@ public class DomGosuslugiParser {
                 Select dropdown = new Select(selectElement);
 
                 try {
+                    readiness.markCardsStale(CARD_SELECTOR);
+                    markSearch();
                     dropdown.selectByValue(countPerPage);
 
                 } catch (Exception e) {
                     notifyLog("Ошибка выбора количества элементов на странице: " + e.getMessage());
                 }
 
-                // Ждем обновления контента после выбора
-                sleep(1500);
+                // Ждем, пока список перерисуется с новым размером страницы
+                readiness.settled();
+                readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
             } else {
                 notifyLog("⚠️ Элемент 'Выводить по' не найден, используем стандартные настройки");
             }
@@ -327,17 +881,38 @@ public class DomGosuslugiParser {
         int totalPages = getTotalPages();
         notifyLog("Общее количество страниц: " + totalPages);
 
+        openJournal();
+        loadSnapshots();
+        openProfileCache();
+        startPage = resumeFromJournal(startPage);
+        if (startPage > endPage) {
+            notifyLog("✅ Диапазон уже сохранён по журналу");
+            closeJournal(true);
+            return;
+        }
         currentPage = startPage;
 
         if (startPage > 1) {
             if (startPage > totalPages) {
                 notifyLog("❌ Стартовая страница " + startPage + " превышает общее количество страниц " + totalPages);
+                closeJournal(startPage == totalPages + 1);
                 return;
             }
             notifyLog("⏩ Переход к странице " + startPage);
-            goToPage(startPage);
+            if (!goToPage(startPage)) {
+                Integer actual = readiness.activePageNumber();
+                notifyLog("❌ Не удалось открыть страницу " + startPage + ", активна страница " + actual);
+                if (actual != null) {
+                    currentPage = actual;
+                }
+            }
         }
 
+        boolean reachedEnd = false;
+        String navigationFailure = null;
+        // Списочная стадия идёт дальше, пока браузеры пула разбирают карточки; сохранение — пачками по странице
+        pipeline = new DetailPipeline<>(detailExecutor, PIPELINE_CAPACITY, this::enrichCompany,
+                PAGE_SIZE, this::persistBatch, this::notifyLog);
         try {
             while (true) {
                 // Проверка отмены в начале каждой страницы
@@ -349,39 +924,326 @@ public class DomGosuslugiParser {
                 notifyLog("📄 Обработка страницы " + currentPage + " из " + totalPages);
 
                 parseCurrentPage();
-
-                // СОХРАНЕНИЕ ПОСЛЕ КАЖДОЙ СТРАНИЦЫ
-                if (!companies.isEmpty()) {
-                    notifyStatus("Сохранение данных страницы " + currentPage + "...");
-                    saveIntermediateResults();
-                    cleanupMemory();
+                if (!blockedResources.isEmpty()) {
+                    notifyLog(resourceStats.drainReport());
                 }
+                reportRateDelays(rateDelays);
 
                 // Проверка отмены перед переходом на следующую страницу
                 if (cancelRequested.get()) {
                     throw new InterruptedException("Операция отменена пользователем");
                 }
 
-                if (!goToNextPage()) {
+                if (currentPage >= endPage) {
+                    notifyLog("✅ Достигнут конец диапазона: страница " + endPage);
+                    reachedEnd = true;
+                    break;
+                }
+
+                PageTurn turn = goToNextPage();
+                if (turn == PageTurn.NO_NEXT_PAGE || (turn == PageTurn.FAILED && currentPage >= totalPages)) {
                     notifyLog("✅ Достигнута последняя страница");
+                    reachedEnd = true;
+                    break;
+                }
+                if (turn == PageTurn.FAILED) {
+                    // Журнал остаётся открытым: следующий запуск продолжит со страницы после сохранённых
+                    navigationFailure = "Не удалось перейти на страницу " + (currentPage + 1) + " из " + totalPages
+                            + ", прогресс сохранён в журнале";
                     break;
                 }
 
                 currentPage++;
             }
         } catch (InterruptedException ie) {
-            // Сохраняем прогресс при прерывании
-            if (!companies.isEmpty()) {
-                notifyStatus("Сохранение данных перед остановкой...");
-                saveIntermediateResults();
-            }
+            // Сохраняем прогресс при прерывании: принятые записи дойдут до файла в finally
+            notifyStatus("Сохранение данных перед остановкой...");
             throw ie;
         } catch (Exception e) {
             notifyLog("Ошибка парсинга страниц: " + e.getMessage());
+        } finally {
+            // Журнал закрываем и при сбое ожидания; регион завершён, только если очередь дошла до файла
+            boolean drained = false;
+            try {
+                notifyLog("⏳ Ожидание карточек из очереди...");
+                pipeline.finish();
+                drained = true;
+            } finally {
+                try {
+                    pipeline.close();
+                    pipeline = null;
+                } finally {
+                    closeJournal(reachedEnd && drained);
+                }
+            }
+        }
+        if (navigationFailure != null) {
+            throw new RuntimeException(navigationFailure);
+        }
+    }
+
+    // Стадия карточек конвейера: после отмены запись сохраняется с основными данными
+    private void enrichCompany(Company company) {
+        if (reusedCards.remove(company) || cancelRequested.get()) {
+            return;
+        }
+        try {
+            parseCompanyDetails(company);
+        } catch (Exception e) {
+            if (!cancelRequested.get()) {
+                notifyLog("❌ Ошибка парсинга деталей для " + company.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Стадия сохранения конвейера (свой поток): companies во время обхода трогает только она.
+    // Когда пачка на диске, отмечаем в журнале карточки и страницы, у которых сохранено всё
+    private void persistBatch(List<Company> batch) {
+        companies.addAll(batch);
+        flushPage("Сохранение данных: +" + batch.size() + " записей...", () -> {
+            journalCompanies(batch);
+            for (Company company : batch) {
+                Integer page = pageOf.remove(company);
+                AtomicInteger pending = page != null ? pagePending.get(page) : null;
+                if (pending != null && pending.decrementAndGet() == 0) {
+                    pagePending.remove(page);
+                    journalPage(page);
+                }
+            }
+        });
+    }
+
+    /**
+     * Пакетный режим: пользователь отмечает регионы (или все), каждый обходится отдельным запуском
+     * парсера со своей сессией и своим файлом; одновременно не больше regionConcurrency регионов.
+     */
+    private RegionBatch.Result parseRegionsBatch() throws Exception {
+        notifyStatus("Загрузка списка регионов...");
+        List<String> available = loadRegionNames();
+        List<String> selected = listener != null ? listener.showRegionsSelectionDialog(available) : List.of(region);
+        if (selected == null || selected.isEmpty()) {
+            throw new InterruptedException("Пользователь отменил выбор региона");
         }
+        notifyLog("🗺️ Регионов к обходу: " + selected.size() + ", одновременно: " + regionConcurrency);
+
+        RegionBatch.Result result = RegionBatch.run(selected, regionConcurrency, listener, cancelRequested,
+                (name, regionListener) -> {
+                    DomGosuslugiParser parser = new DomGosuslugiParser();
+                    parser.setListener(regionListener);
+                    parser.setCancellationFlag(cancelRequested);
+                    parser.setDetailConcurrency(detailConcurrency);
+                    parser.setIncremental(incremental);
+                    parser.setCacheMaxAge(cacheMaxAge);
+                    parser.setRegion(name);
+                    parser.setAskRegion(false);
+                    parser.setEngine(engine);
+                    parser.setDetailNavigation(detailNavigation);
+                    parser.setBlockedResources(blockedResources);
+                    parser.setApiBaseUrl(apiBaseUrl);
+                    parser.setShards(shards);
+                    parser.parseOrganizations();
+                });
+        notifyLog("🗺️ " + result.summary());
+        checkCancelled();
+        return result;
     }
 
-    private void goToPage(int pageNumber) {
+    // Названия регионов: из справочника бэкенда для HTTP-движка, иначе из фильтра на странице реестра
+    private List<String> loadRegionNames() throws Exception {
+        if (engine == ParserEngine.HTTP) {
+            try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiBaseUrl, OrganizationsHttpEngine.STATE_GUID, 1)) {
+                return new ArrayList<>(client.fetchRegions().keySet());
+            }
+        }
+        try {
+            initDriver();
+            driver.get(TARGET_URL);
+            if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+            }
+            List<String> names = new ArrayList<>();
+            List<WebElement> selects = driver.findElements(By.cssSelector("select"));
+            if (!selects.isEmpty()) {
+                for (WebElement option : new Select(selects.get(0)).getOptions()) {
+                    String text = option.getText().trim();
+                    if (!text.isEmpty()) names.add(text);
+                }
+            }
+            return names;
+        } finally {
+            if (driver != null) {
+                driver.quit();
+                driver = null;
+            }
+        }
+    }
+
+    // Готовая страница: сессия-шард отдаёт её координатору, иначе в поток записи; onSaved — когда она на диске
+    private void flushPage(String status, Runnable onSaved) {
+        if (pageSink != null) {
+            pageSink.accept(new ArrayList<>(companies), onSaved);
+            companies.clear();
+            return;
+        }
+        if (!companies.isEmpty()) {
+            notifyStatus(status);
+        }
+        saveIntermediateResults(onSaved);
+    }
+
+    /**
+     * Шардированный обход: пробная сессия выбирает регион и узнаёт число страниц, затем диапазон
+     * startPage..totalPages делится между shards независимыми сессиями (свой браузер, фильтры и пул карточек).
+     * Страницы всех сессий сохраняются в один файл, карточки с уже виденной ссылкой отбрасываются.
+     */
+    private void parseOrganizationsSharded() throws InterruptedException {
+        notifyStatus("Пробная сессия: регион и число страниц...");
+        int totalPages;
+        try {
+            initDriver();
+            driver.get(TARGET_URL);
+            if (!readiness.appBootstrapped(PageReadiness.APP_TIMEOUT) || !readiness.settled()) {
+                notifyLog("⚠️ Страница реестра не подтвердила готовность, продолжаем...");
+            }
+            checkCancelled();
+
+            selectRegionFilter();
+            checkCancelled();
+
+            clickSearchButton();
+            selectItemsPerPage(String.valueOf(PAGE_SIZE));
+            totalPages = getTotalPages();
+        } finally {
+            if (driver != null) {
+                driver.quit();
+                driver = null;
+            }
+        }
+        checkCancelled();
+
+        List<PageRange> ranges = PageRange.split(startPage, totalPages, shards);
+        if (ranges.isEmpty()) {
+            notifyLog("❌ Стартовая страница " + startPage + " превышает общее количество страниц " + totalPages);
+            return;
+        }
+        notifyLog("🧩 Страницы " + startPage + "–" + totalPages + " делим на " + ranges.size() + " сессий: " + ranges);
+        // Журнал открываем до запуска сессий: журнал завершённого запуска очищается один раз, а не каждой сессией
+        openJournal();
+        closeJournal(false);
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger pagesDone = new AtomicInteger();
+        int pagesTotal = totalPages - startPage + 1;
+        PageSink<Company> sink = new PageSink<>() {
+            @Override
+            public void accept(List<Company> page, Runnable onSaved) {
+                mergeShardPage(page, onSaved, seen, duplicates, pagesDone, pagesTotal);
+            }
+
+            @Override
+            public void sync() {
+                syncOutput();
+            }
+        };
+
+        List<ShardListener> shardListeners = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        ExecutorService sessions = Executors.newFixedThreadPool(ranges.size());
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                PageRange range = ranges.get(i);
+                ShardListener shardListener = new ShardListener(listener, "Сессия " + (i + 1) + ", стр. " + range);
+                DomGosuslugiParser shard = newShard(range, shardListener, sink);
+                shardListeners.add(shardListener);
+                futures.add(CompletableFuture.runAsync(shard::parseOrganizations, sessions));
+            }
+
+            // Сессии сами видят общий флаг отмены и сохраняют свои страницы — ждём, пока все закончат
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            while (true) {
+                try {
+                    all.get(1, TimeUnit.SECONDS);
+                    break;
+                } catch (java.util.concurrent.TimeoutException ignore) {
+                } catch (ExecutionException e) {
+                    notifyLog("❌ Сессия завершилась исключением: " + e.getCause());
+                    break;
+                }
+            }
+        } finally {
+            sessions.shutdown();
+        }
+
+        int failed = 0;
+        for (ShardListener shardListener : shardListeners) {
+            if (!shardListener.isSuccess()) {
+                failed++;
+                notifyLog("⚠️ Сессия завершилась с ошибкой: " + shardListener.getMessage());
+            }
+        }
+        notifyLog("🧩 Сессий завершено успешно: " + (shardListeners.size() - failed) + " из " + shardListeners.size()
+                + ", дублей отброшено: " + duplicates.get());
+        checkCancelled();
+        if (failed == 0) {
+            openJournal();
+            closeJournal(true);
+        }
+    }
+
+    private DomGosuslugiParser newShard(PageRange range, ProgressListener shardListener, PageSink<Company> sink) {
+        DomGosuslugiParser shard = new DomGosuslugiParser();
+        shard.setListener(shardListener);
+        shard.setCancellationFlag(cancelRequested);
+        shard.setDetailConcurrency(detailConcurrency);
+        shard.setIncremental(incremental);
+        shard.setCacheMaxAge(cacheMaxAge);
+        shard.setRegion(region);
+        shard.setAskRegion(false);
+        shard.setEngine(engine);
+        shard.setDetailNavigation(detailNavigation);
+        shard.setBlockedResources(blockedResources);
+        shard.setStartPage(range.first());
+        shard.setEndPage(range.last());
+        shard.setPageSink(sink);
+        return shard;
+    }
+
+    // Страница от сессии-шарда: отбрасываем уже виденные карточки и сохраняем остальное (запись в файл — по одной)
+    private synchronized void mergeShardPage(List<Company> page, Runnable onSaved, Set<String> seen,
+                                             AtomicInteger duplicates, AtomicInteger pagesDone, int pagesTotal) {
+        for (Company company : page) {
+            String key = company.getProfileUrl() != null && !company.getProfileUrl().isEmpty()
+                    ? company.getProfileUrl() : company.getName();
+            if (key == null || seen.add(key)) {
+                companies.add(company);
+            } else {
+                duplicates.incrementAndGet();
+            }
+        }
+        notifyPageProgress(pagesDone.incrementAndGet(), pagesTotal);
+        flushPage("Сохранение данных: страниц " + pagesDone.get() + " из " + pagesTotal + "...", onSaved);
+    }
+
+    // Прямой переход через scope пагинации; если он недоступен — листаем ссылками. true — страница открыта
+    private boolean goToPage(int pageNumber) throws InterruptedException {
+        throttle(RateGovernor.Stage.LIST);
+        readiness.markCardsStale(CARD_SELECTOR);
+        markSearch();
+        String jump = Pagination.jump(driver, pageNumber);
+        if (Pagination.JUMPED.equals(jump) && readiness.activePage(pageNumber, PageReadiness.PAGE_TIMEOUT)) {
+            readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
+            notifyLog("➡️ Переход на страницу " + pageNumber + " напрямую");
+            return true;
+        }
+        notifyLog("⚠️ Прямой переход на страницу " + pageNumber + " не удался (" + jump + "), листаем пагинацию");
+        readiness.forgetStaleCards();
+        stepToPage(pageNumber);
+        Integer actual = readiness.activePageNumber();
+        return actual != null && actual == pageNumber;
+    }
+
+    private void stepToPage(int pageNumber) throws InterruptedException {
         try {
             int choicePage = 1;
             int countingPage = pageNumber;
@@ -390,11 +1252,16 @@ public class DomGosuslugiParser {
                 WebElement pageLink = driver.findElement(By.xpath("//a[text()='" + (choicePage + 2) + "']"));
                 if (pageLink != null && pageLink.isEnabled()) {
                     ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", pageLink);
-                    sleep(1000);
+                    throttle(RateGovernor.Stage.LIST);
+                    readiness.markCardsStale(CARD_SELECTOR);
+                    markSearch();
                     pageLink.click();
 
                     countingPage -= 2;
                     choicePage += 2;
+                    // ссылки пагинации перерисовываются — ждём, пока активной станет выбранная и придут её карточки
+                    readiness.activePage(choicePage, PageReadiness.PAGE_TIMEOUT);
+                    readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
                 }
             }
 
@@ -402,17 +1269,22 @@ public class DomGosuslugiParser {
                 WebElement pageLink = driver.findElement(By.xpath("//a[text()='" + (choicePage + 1) + "']"));
                 if (pageLink != null && pageLink.isEnabled()) {
                     ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", pageLink);
-                    sleep(1000);
+                    throttle(RateGovernor.Stage.LIST);
+                    readiness.markCardsStale(CARD_SELECTOR);
+                    markSearch();
                     pageLink.click();
                 }
             }
 
             // Ждем загрузки новой страницы
-            wait.until(ExpectedConditions.presenceOfAllElementsLocatedBy(
-                    By.cssSelector("ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card")));
-            sleep(2000);
+            if (!readiness.activePage(pageNumber, PageReadiness.PAGE_TIMEOUT)) {
+                notifyLog("⚠️ Страница " + pageNumber + " не стала активной за " + PageReadiness.PAGE_TIMEOUT.toSeconds() + " сек");
+            }
+            readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
 
             notifyLog("➡️ Переход на страницу " + pageNumber);
+        } catch (InterruptedException ie) {
+            throw ie;
         } catch (Exception e) {
             notifyLog("❌ Ошибка перехода на страницу " + pageNumber + ": " + e.getMessage());
         }
@@ -441,240 +1313,238 @@ public class DomGosuslugiParser {
         }
     }
 
-    // Добавляем метод для промежуточного сохранения
     private void saveIntermediateResults() {
+        saveIntermediateResults(null);
+    }
+
+    // Сохранение страницы: записи уходят в поток записи журнала строк, обход идёт дальше.
+    // onSaved выполнится в потоке записи после сброса записей на диск (нечего сохранять — сразу)
+    private void saveIntermediateResults(Runnable onSaved) {
         if (companies.isEmpty()) {
+            if (onSaved != null) onSaved.run();
             return;
         }
 
         try {
-            String fileName = "Управляющие компании " + region + " " + LocalDate.now().getYear() + ".xlsx";
-            boolean fileExists = new File(fileName).exists();
+            rowWriter().publish(new ArrayList<>(companies), onSaved);
+        } catch (IOException e) {
+            cancelRequested.set(true);
+            notifyLog("❌ Ошибка промежуточного сохранения: " + e.getMessage());
+        }
+        companies.clear();
+    }
 
-            Workbook workbook;
-            Sheet sheet;
+    // Журнал строк текущего региона и его поток записи; при смене региона (повтор ошибок по регионам) прежний выгружается.
+    // Ошибка записи останавливает обход так же, как отмена
+    private AsyncRowWriter<Company> rowWriter() throws IOException {
+        Path path = ResultExport.journalFor(outputBaseName());
+        if (rowWriter != null && !rowWriter.getPath().equals(path)) {
+            finishOutput();
+        }
+        if (rowWriter == null) {
+            rowWriter = new AsyncRowWriter<>(RowJournal.open(path, ResultExport.COMPANIES), ResultExport::companyRecord,
+                    this::notifyLog, () -> cancelRequested.set(true));
+        }
+        return rowWriter;
+    }
 
-            if (fileExists) {
-                try (FileInputStream fis = new FileInputStream(fileName)) {
-                    workbook = new XSSFWorkbook(fis);
-                }
-                sheet = workbook.getSheet("Компании");
-                if (sheet == null) {
-                    sheet = workbook.createSheet("Компании");
-                    createHeaders(sheet, workbook);
-                }
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Компании");
-                createHeaders(sheet, workbook);
-            }
-
-            CellStyle defaultStyle = createDefaultStyle(workbook);
-            CellStyle linkStyle = createLinkStyle(workbook);
-            CreationHelper createHelper = workbook.getCreationHelper();
-
-            // Получаем существующие компании из файла
-            Map<String, Integer> existingCompanies = new HashMap<>();
-            if (fileExists && sheet.getPhysicalNumberOfRows() > 1) {
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row != null && row.getCell(0) != null) {
-                        String companyName = row.getCell(0).getStringCellValue();
-                        if (companyName != null && !companyName.trim().isEmpty()) {
-                            existingCompanies.put(companyName.trim(), i);
-                        }
-                    }
-                }
-            }
+    // Ждём, пока переданное на запись дошло до диска и отмечено в журнале прогресса (сессия-шард — у координатора)
+    private void syncOutput() {
+        if (pageSink != null) {
+            pageSink.sync();
+        } else if (rowWriter != null) {
+            rowWriter.sync();
+        }
+    }
 
-            int newRowsCount = 0;
-            int updatedRowsCount = 0;
+    // Новый обход региона (нечего продолжать): строки прошлого обхода в журнал не попадают
+    private void resetRowJournal() {
+        try {
+            rowWriter().reset();
+        } catch (IOException | IllegalStateException e) {
+            notifyLog("⚠️ Не удалось очистить журнал строк: " + e.getMessage());
+        }
+    }
 
-            // Добавляем/обновляем только новые компании
-            for (Company company : companies) {
-                if (company.getName() == null || company.getName().trim().isEmpty()) {
-                    continue;
-                }
+    // Этап выгрузки: поток записи дописывает очередь, журнал строк региона превращается в xlsx
+    private void finishOutput() {
+        if (rowWriter == null) return;
+        Path path = rowWriter.getPath();
+        try {
+            notifyStatus("Запись очереди сохранения...");
+            String report = rowWriter.close();
+            if (report != null) notifyLog(report);
+            notifyStatus("Сохранение в Excel...");
+            String summary = ResultExport.export(path);
+            if (summary != null) notifyLog(summary);
+        } catch (IOException e) {
+            notifyLog("❌ Ошибка сохранения в Excel (журнал строк сохранён: " + path + "): " + e.getMessage());
+        } finally {
+            rowWriter = null;
+        }
+    }
 
-                String companyName = company.getName().trim();
-                Integer existingRowIndex = existingCompanies.get(companyName);
+    private void parseCurrentPage() throws InterruptedException {
+        try {
+            // Проверка отмены перед началом парсинга страницы
+            if (cancelRequested.get()) {
+                throw new InterruptedException("Операция отменена пользователем");
+            }
 
-                if (existingRowIndex != null) {
-                    updateCompanyRow(sheet.getRow(existingRowIndex), company, defaultStyle, linkStyle, createHelper);
-                    updatedRowsCount++;
-                } else {
-                    int newRowIndex = sheet.getLastRowNum() + 1;
-                    Row row = sheet.createRow(newRowIndex);
-                    createCompanyRow(row, company, defaultStyle, linkStyle, createHelper);
-                    newRowsCount++;
-                    existingCompanies.put(companyName, newRowIndex);
-                }
+            if (!readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT)) {
+                notifyLog("⚠️ Карточки организаций не появились за " + PageReadiness.CARDS_TIMEOUT.toSeconds() + " сек");
+                return;
             }
 
-            // Авто-размер колонок
-            for (int i = 0; i < 11; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 512);
+            // 1. Основные данные карточек: из перехваченного ответа, иначе одним скриптом, при сбое — поэлементно
+            List<Company> basicCompanies = capturedCompanies();
+            if (basicCompanies == null) {
+                basicCompanies = extractCompanyCards();
+            }
+            if (basicCompanies == null) {
+                basicCompanies = parseCompanyCardsOneByOne();
             }
 
-            // Авто-фильтр
-            sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, 10));
+            if (basicCompanies.isEmpty()) {
+                notifyLog("⚠️ На странице не найдено компаний для парсинга");
+                return;
+            }
 
-            try (FileOutputStream fos = new FileOutputStream(fileName)) {
-                workbook.write(fos);
+            basicCompanies = skipJournaled(basicCompanies);
+            if (basicCompanies.isEmpty()) {
+                journalPage(currentPage);
+                return;
             }
+            reusedCards.addAll(reuseSnapshots(basicCompanies));
 
-            workbook.close();
+            // 2. Заготовки уходят в конвейер карточек; put ждёт, если очередь заполнена (обратное давление).
+            // После отмены заготовки всё равно передаём — они сохранятся с основными данными
+            pagePending.put(currentPage, new AtomicInteger(basicCompanies.size()));
+            for (Company basicCompany : basicCompanies) {
+                pageOf.put(basicCompany, currentPage);
+                pipeline.put(basicCompany);
+            }
+            notifyLog("🎯 Страница " + currentPage + " передана в обработку карточек (в очереди: " + pipeline.queued() + ")");
 
-            notifyLog("💾 Промежуточное сохранение: " + newRowsCount + " новых, " + updatedRowsCount + " обновлено");
+        } catch (InterruptedException ie) {
+            throw ie;
+        } catch (TimeoutException te) {
+            notifyLog("⚠️ Карточки организаций не появились: " + te.getMessage());
+        } catch (Exception e) {
+            notifyLog("❌ Ошибка парсинга страницы: " + e.getMessage());
+        }
+    }
 
-        } catch (IOException e) {
-            cancelRequested.set(true);
-            notifyLog("❌ Ошибка промежуточного сохранения: " + e.getMessage());
+    // Отметка перед кликом, меняющим список: ответы поиска до неё странице не подходят
+    private void markSearch() {
+        if (searchCapture != null) {
+            searchMark = searchCapture.mark();
         }
     }
 
-    // Добавляем метод для очистки памяти
-    private void cleanupMemory() {
-        // Очищаем список компаний
-        companies.clear();
+    // Ответ поиска именно этой страницы: номер и размер страницы в запросе (если они есть) совпадают.
+    // Тело читается асинхронно, поэтому запоздавший ответ прежней страницы может прийти после отметки
+    private boolean isSearchFor(XhrCapture.Response response, int page) {
+        if (!response.url().contains(SEARCH_MARKER)) return false;
+        String index = XhrCapture.queryParam(response.url(), "pageIndex");
+        String size = XhrCapture.queryParam(response.url(), "elementsPerPage");
+        long bodyIndex = JsonValues.number(response.json(), "pageIndex");
+        return (index == null || index.equals(String.valueOf(page)))
+                && (size == null || size.equals(String.valueOf(PAGE_SIZE)))
+                && (bodyIndex < 0 || bodyIndex == page);
+    }
 
-        // Принудительный вызов сборщика мусора
-        System.gc();
+    private void startSearchCapture() {
+        try {
+            searchCapture = new XhrCapture(driver, SEARCH_MARKER);
+            searchMark = 0;
+            notifyLog("📡 Перехват ответов реестра через DevTools включён");
+        } catch (Exception e) {
+            notifyLog("⚠️ DevTools недоступен, карточки будут читаться со страницы: " + e.getMessage());
+        }
+    }
 
-        notifyLog("🧹 Память очищена");
+    // Организации текущей страницы из перехваченного ответа поиска; null — перехват выключен или ответа нет
+    private List<Company> capturedCompanies() throws InterruptedException {
+        if (searchCapture == null) {
+            return null;
+        }
+        int page = currentPage;
+        Object response = searchCapture.awaitLatest(r -> isSearchFor(r, page), searchMark, CAPTURE_TIMEOUT);
+        searchMark = searchCapture.mark();
+        if (response == null) {
+            notifyLog("⚠️ Ответ поиска не перехвачен, читаем карточки со страницы");
+            return null;
+        }
+        List<Company> result = OrganizationsHttpEngine.companiesFrom(response, BASE_URL);
+        if (result.isEmpty()) {
+            notifyLog("⚠️ В перехваченном ответе нет организаций, читаем карточки со страницы");
+            return null;
+        }
+        notifyLog("📡 Карточки страницы из ответа реестра: " + result.size());
+        return result;
     }
 
-    private void parseCurrentPage() throws InterruptedException {
+    // Все карточки страницы за один вызов executeScript; null — если скрипт не сработал
+    private List<Company> extractCompanyCards() {
         try {
-            // Проверка отмены перед началом парсинга страницы
-            if (cancelRequested.get()) {
-                throw new InterruptedException("Операция отменена пользователем");
+            Object raw = ((JavascriptExecutor) driver).executeScript(EXTRACT_CARDS_SCRIPT, BASE_URL, CARD_SELECTOR);
+            if (!(raw instanceof List) || ((List<?>) raw).isEmpty()) {
+                notifyLog("⚠️ Пакетное чтение карточек не вернуло данных, разбираем поэлементно");
+                return null;
             }
 
-            wait.until(ExpectedConditions.presenceOfAllElementsLocatedBy(
-                    By.cssSelector("ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card")));
-
-            sleep(2000);
-
-            // 1. ОДНОПОТОЧНЫЙ парсинг основных данных карточек
-            List<Company> basicCompanies = new ArrayList<>();
-
-            int cardCount = driver.findElements(
-                    By.cssSelector("ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card")).size();
-            notifyLog("Найдено карточек на странице: " + cardCount);
-
-            for (int i = 0; i < cardCount; i++) {
-                // Проверка отмены перед каждой карточкой (только быстрая проверка флага)
-                if (cancelRequested.get()) {
-                    notifyLog("⏹️ Отмена запрошена, прерываем парсинг карточек");
-                    break;
-                }
-
-                try {
-                    List<WebElement> currentCards = driver.findElements(
-                            By.cssSelector("ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card"));
-
-                    if (i < currentCards.size()) {
-                        WebElement card = currentCards.get(i);
-                        Company company = parseCompanyCard(card);
-                        if (company != null && company.getProfileUrl() != null && !company.getProfileUrl().isEmpty()) {
-                            basicCompanies.add(company);
-                        }
-                    }
-                } catch (Exception e) {
-                    if (e.getMessage().contains("stale element reference")) {
-                        notifyLog("❌ STALE ЭЛЕМЕНТ при парсинге карточки " + (i + 1) + ", пропускаем");
-                    }
+            List<?> cards = (List<?>) raw;
+            notifyLog("Найдено карточек на странице: " + cards.size());
+
+            List<Company> result = new ArrayList<>();
+            for (Object card : cards) {
+                if (!(card instanceof Map)) continue;
+                Company company = CompanyMapper.fromCardMap((Map<?, ?>) card);
+                if (company == null) {
+                    notifyLog("⚠️ Карточка без названия/ссылки пропущена");
+                } else if (!company.getProfileUrl().isEmpty()) {
+                    result.add(company);
                 }
             }
+            return result;
+        } catch (Exception e) {
+            notifyLog("⚠️ Пакетное чтение карточек не удалось, разбираем поэлементно: " + e.getMessage());
+            return null;
+        }
+    }
 
-            if (basicCompanies.isEmpty()) {
-                notifyLog("⚠️ На странице не найдено компаний для парсинга");
-                return;
-            }
-
-            // 2. МНОГОПОТОЧНЫЙ парсинг - проверка отмены перед запуском
-            if (cancelRequested.get()) {
-                throw new InterruptedException("Операция отменена пользователем");
-            }
-
-            ExecutorService executorService = Executors.newFixedThreadPool(3);
-            List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-            for (Company basicCompany : basicCompanies) {
-                // Проверка отмены перед добавлением каждой задачи
-                if (cancelRequested.get()) {
-                    notifyLog("⏹️ Отмена запрошена, прерываем запуск потоков");
-                    break;
-                }
+    // Запасной путь: каждая карточка через отдельные вызовы WebDriver
+    private List<Company> parseCompanyCardsOneByOne() {
+        List<Company> basicCompanies = new ArrayList<>();
 
-                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                    // Проверка отмены в начале каждого потока
-                    if (cancelRequested.get()) {
-                        return;
-                    }
+        int cardCount = driver.findElements(By.cssSelector(CARD_SELECTOR)).size();
+        notifyLog("Найдено карточек на странице: " + cardCount);
 
-                    WebDriver threadDriver = null;
-                    try {
-                        threadDriver = new ChromeDriver(createChromeOptions());
-
-                        // Передаем флаг отмены в метод парсинга деталей
-                        parseCompanyDetails(basicCompany, threadDriver);
-                    } catch (Exception e) {
-                        if (!cancelRequested.get()) {
-                            notifyLog("❌ Ошибка парсинга деталей для " + basicCompany.getName() + ": " + e.getMessage());
-                        }
-                    } finally {
-                        if (threadDriver != null) {
-                            threadDriver.quit();
-                        }
-                    }
-                }, executorService);
-                futures.add(future);
+        for (int i = 0; i < cardCount; i++) {
+            // Проверка отмены перед каждой карточкой (только быстрая проверка флага)
+            if (cancelRequested.get()) {
+                notifyLog("⏹️ Отмена запрошена, прерываем парсинг карточек");
+                break;
             }
 
-            // Ждем завершения с периодической проверкой отмены
-            CompletableFuture<Void> allFutures = CompletableFuture.allOf(
-                    futures.toArray(new CompletableFuture[0])
-            );
-
             try {
-                // Ждем с таймаутом и проверкой отмены каждую секунду
-                for (int i = 0; i < 480; i++) { // 8 минут = 480 секунд
-                    if (cancelRequested.get()) {
-                        notifyLog("⏹️ Отмена запрошена, прерываем ожидание потоков");
-                        futures.forEach(f -> f.cancel(true));
-                        break;
-                    }
+                List<WebElement> currentCards = driver.findElements(By.cssSelector(CARD_SELECTOR));
 
-                    if (allFutures.isDone()) {
-                        break;
+                if (i < currentCards.size()) {
+                    WebElement card = currentCards.get(i);
+                    Company company = parseCompanyCard(card);
+                    if (company != null && company.getProfileUrl() != null && !company.getProfileUrl().isEmpty()) {
+                        basicCompanies.add(company);
                     }
-
-                    sleep(1000); // Ждем 1 секунду
                 }
-
-                if (!allFutures.isDone()) {
-                    notifyLog("⚠️ Таймаут ожидания завершения потоков парсинга");
-                    futures.forEach(f -> f.cancel(true));
-                } else {
-                    notifyLog("🎯 Парсинг страницы " + currentPage + " завершен");
+            } catch (Exception e) {
+                if (e.getMessage().contains("stale element reference")) {
+                    notifyLog("❌ STALE ЭЛЕМЕНТ при парсинге карточки " + (i + 1) + ", пропускаем");
                 }
-            } finally {
-                executorService.shutdownNow(); // Принудительно завершаем executor
             }
-
-            // Добавляем компании в общий список
-            companies.addAll(basicCompanies);
-
-        } catch (InterruptedException ie) {
-            throw ie;
-        } catch (TimeoutException te) {
-            notifyLog("⚠️ Карточки организаций не появились: " + te.getMessage());
-        } catch (Exception e) {
-            notifyLog("❌ Ошибка парсинга страницы: " + e.getMessage());
         }
+        return basicCompanies;
     }
 
     // Поля карточки списка: устойчивые селекторы для названия и ссылки
@@ -797,7 +1667,8 @@ public class DomGosuslugiParser {
         }
     }
 
-    private void parseCompanyDetails(Company company, WebDriver threadDriver) {
+    // Берём браузер из пула, парсим карточку и возвращаем браузер обратно
+    private void parseCompanyDetails(Company company) throws InterruptedException {
         if (company.getProfileUrl() == null || company.getProfileUrl().isEmpty()) {
             notifyLog("❌ Пустая ссылка для компании: " + company.getName());
             return;
@@ -807,21 +1678,165 @@ public class DomGosuslugiParser {
         if (cancelRequested.get()) {
             return;
         }
+        if (applyCachedProfile(company)) {
+            rememberSnapshot(company);
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            // Лимит берём до выдачи браузера, чтобы ожидание не держало браузер занятым
+            throttle(RateGovernor.Stage.DETAIL);
+            DetailWorker worker = detailPool.borrow();
+            long started = System.currentTimeMillis();
+            DetailFailure failure = DetailFailure.OTHER;
+            try {
+                failure = parseCompanyDetails(company, worker);
+            } finally {
+                // Карточка без блоков (MISSING_BLOCK) — особенность профиля, а не браузера или нагрузки на сайт:
+                // браузер не пересоздаём, регулятору это успешный замер
+                boolean broken = failure != null && failure.isRetryable();
+                detailPool.release(worker, broken);
+                if (!cancelRequested.get()) {
+                    detailController.record(System.currentTimeMillis() - started, !broken);
+                }
+            }
+
+            if (failure == null && !cancelRequested.get()) {
+                rememberSnapshot(company);
+                cacheProfile(company);
+            }
+            if (failure == null || cancelRequested.get()) {
+                return;
+            }
+            if (!failure.isRetryable() || attempt >= DETAIL_ATTEMPTS) {
+                deadLetter(company, failure, attempt);
+                return;
+            }
+            Duration delay = retryBackoff(attempt);
+            notifyLog("🔁 Повтор карточки " + company.getName() + " (" + failure.getTitle() + "): попытка "
+                    + (attempt + 1) + " из " + DETAIL_ATTEMPTS + " через " + delay.toMillis() / 1000.0 + " с");
+            detailExecutor.backoff(delay, cancelRequested::get);
+            if (cancelRequested.get()) {
+                return;
+            }
+        }
+    }
+
+    // Пул браузеров карточек, регулятор и исполнитель на весь запуск; закрываются в finally parseOrganizations
+    private void startDetailWorkers() {
+        detailController = new ConcurrencyController(DETAIL_WORKERS, detailConcurrency::get, this::onDetailConcurrency);
+        detailPool = new DetailWorkerPool(this::newChromeDriver,
+                detailController.getLimit(), WORKER_MAX_PAGES, Duration.ofSeconds(TIMEOUT_SECONDS), this::notifyLog);
+        detailExecutor = new DetailExecutor(detailPool, detailController::getLimit);
+        onDetailConcurrency(detailController.getLimit(), detailConcurrency.get(), "старт");
+    }
+
+    /**
+     * Режим "только повтор": карточки из файла ошибок загружаются заново (с теми же повторами),
+     * строки в Excel своего региона обновляются по названию. Снова не удавшиеся карточки дописываются в файл,
+     * а восстановленные убираются из него после каждой группы региона, когда их строки записаны на диск, —
+     * при отмене или аварии необработанные записи остаются в файле.
+     */
+    private String retryDeadLetterFile() throws Exception {
+        List<DeadLetterFile.Entry> entries = deadLetters.readAll();
+        if (entries.isEmpty()) {
+            notifyLog("✅ Файл ошибок карточек пуст: " + deadLetters.getPath().toAbsolutePath());
+            return "Повторять нечего";
+        }
+        notifyLog("🔁 Повтор карточек из файла ошибок: " + entries.size());
+        notifyLog(RateGovernor.shared().describe());
+
+        checkSeleniumSetup();
+        startDetailWorkers();
+
+        Map<String, List<DeadLetterFile.Entry>> byRegion = new LinkedHashMap<>();
+        for (DeadLetterFile.Entry entry : entries) {
+            byRegion.computeIfAbsent(entry.region(), k -> new ArrayList<>()).add(entry);
+        }
+
+        int processed = 0;
+        for (Map.Entry<String, List<DeadLetterFile.Entry>> group : byRegion.entrySet()) {
+            checkCancelled();
+            if (group.getKey() != null && !group.getKey().isEmpty()) {
+                region = group.getKey();
+            }
+            notifyStatus("Повтор карточек: " + region + "...");
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (DeadLetterFile.Entry entry : group.getValue()) {
+                futures.add(detailExecutor.submit(() -> enrichCompany(entry.company())));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+            } catch (ExecutionException ignore) {
+                // ошибки отдельных карточек уже обработаны в задачах
+            }
+            checkCancelled();
+
+            for (DeadLetterFile.Entry entry : group.getValue()) {
+                companies.add(entry.company());
+            }
+            saveIntermediateResults();
+            syncOutput();
+
+            // Строки группы на диске. Остаток файла: всё, кроме восстановленных карточек группы (снова не удавшиеся уже дописаны)
+            Set<String> recovered = new HashSet<>();
+            for (DeadLetterFile.Entry entry : group.getValue()) {
+                if (!deadLetteredUrls.contains(entry.company().getProfileUrl())) {
+                    recovered.add(entry.company().getProfileUrl());
+                }
+            }
+            deadLetters.removeAll(recovered);
+            processed += group.getValue().size();
+            notifyPageProgress(processed, entries.size());
+        }
+
+        String summary = "Повтор карточек: восстановлено " + (processed - deadLettered.get()) + " из " + entries.size()
+                + ", снова в файле ошибок: " + deadLettered.get();
+        notifyLog("🔁 " + summary);
+        return summary;
+    }
+
+    // Карточка не загрузилась и после повторов: основные данные сохранятся, ссылка уходит в файл ошибок
+    private void deadLetter(Company company, DetailFailure failure, int attempts) {
+        deadLettered.incrementAndGet();
+        deadLetteredUrls.add(company.getProfileUrl());
+        try {
+            deadLetters.append(new DeadLetterFile.Entry(region, failure, attempts, company));
+            notifyLog("📮 Карточка в файл ошибок (" + failure.getTitle() + ", попыток: " + attempts + "): " + company.getName());
+        } catch (IOException e) {
+            notifyLog("❌ Не удалось записать в файл ошибок " + company.getProfileUrl() + ": " + e.getMessage());
+        }
+    }
+
+    // Экспоненциальная пауза перед попыткой attempt + 1 со случайным разбросом, чтобы повторы не шли залпом
+    private static Duration retryBackoff(int attempt) {
+        long ms = Math.min(RETRY_BACKOFF_MAX.toMillis(), RETRY_BACKOFF.toMillis() << (attempt - 1));
+        return Duration.ofMillis(ms + ThreadLocalRandom.current().nextLong(ms / 2 + 1));
+    }
+
+    // Решение регулятора: в лог и в GUI
+    private void onDetailConcurrency(int limit, int ceiling, String reason) {
+        notifyLog("🎚️ Потоков карточек: " + limit + " из " + ceiling + " — " + reason);
+        if (listener != null) listener.onConcurrencyChanged(limit, ceiling, reason);
+    }
+
+    // Возвращает класс ошибки или null при успехе; после повторяемой ошибки браузер пересоздаётся
+    private DetailFailure parseCompanyDetails(Company company, DetailWorker worker) {
+        if (detailNavigation == DetailNavigation.IN_APP) {
+            return parseCompanyDetailsInApp(company, worker);
+        }
 
-        WebDriverWait threadWait = new WebDriverWait(threadDriver, Duration.ofSeconds(TIMEOUT_SECONDS));
+        WebDriver threadDriver = worker.getDriver();
+        WebDriverWait threadWait = worker.getWait();
+        String originalWindow = worker.getHomeWindow();
 
         try {
             notifyLog("🔄 Переходим на страницу: " + company.getName());
 
-            String originalWindow = threadDriver.getWindowHandle();
             ((JavascriptExecutor) threadDriver).executeScript("window.open(arguments[0], '_blank');", company.getProfileUrl());
-            sleep(1000);
-
-            // Проверка отмены после открытия вкладки
-            if (cancelRequested.get()) {
-                threadDriver.quit();
-                return;
-            }
+            PageReadiness tabReadiness = new PageReadiness(threadDriver);
+            tabReadiness.until(PageReadiness.PAGE_TIMEOUT, d -> d.getWindowHandles().size() > 1);
 
             // Переключаемся на новую вкладку
             for (String windowHandle : threadDriver.getWindowHandles()) {
@@ -831,36 +1846,152 @@ public class DomGosuslugiParser {
                 }
             }
 
-            threadWait.until(ExpectedConditions.presenceOfElementLocated(By.cssSelector("body")));
-            sleep(1500);
+            if (!tabReadiness.appBootstrapped(PageReadiness.APP_TIMEOUT)) {
+                notifyLog("⚠️ Карточка не загрузилась за " + PageReadiness.APP_TIMEOUT.toSeconds() + " сек: " + company.getName());
+            }
+            tabReadiness.settled();
 
             // Проверка отмены после загрузки страницы
             if (cancelRequested.get()) {
                 threadDriver.close();
                 threadDriver.switchTo().window(originalWindow);
-                return;
+                return null;
             }
 
-            clickAdditionalInfoButton(threadDriver, threadWait);
-            sleep(1500);
+            DetailFailure failure = parseProfileDetails(company, threadDriver, threadWait);
+
+            // Закрываем вкладку
+            threadDriver.close();
+            threadDriver.switchTo().window(originalWindow);
+            return failure;
+
+        } catch (Exception e) {
+            DetailFailure failure = DetailFailure.classify(e);
+            if (!cancelRequested.get()) {
+                notifyLog("❌ Ошибка при парсинге детальной информации для " + company.getName()
+                        + " (" + failure.getTitle() + "): " + e.getMessage());
+            }
+            // Браузер после неповторяемой ошибки остаётся в пуле — закрываем вкладку карточки,
+            // а если не вышло, считаем это сбоем навигации, чтобы браузер пересоздали
+            if (!failure.isRetryable() && !closeProfileTabs(threadDriver, originalWindow)) {
+                return DetailFailure.NAVIGATION;
+            }
+            return failure;
+        }
+    }
+
+    private boolean closeProfileTabs(WebDriver threadDriver, String originalWindow) {
+        try {
+            for (String windowHandle : threadDriver.getWindowHandles()) {
+                if (!windowHandle.equals(originalWindow)) {
+                    threadDriver.switchTo().window(windowHandle);
+                    threadDriver.close();
+                }
+            }
+            threadDriver.switchTo().window(originalWindow);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private DetailFailure parseCompanyDetailsInApp(Company company, DetailWorker worker) {
+        WebDriver threadDriver = worker.getDriver();
+        WebDriverWait threadWait = worker.getWait();
+
+        try {
+            notifyLog("🔄 Переходим на страницу: " + company.getName());
+
+            XhrCapture capture = engine == ParserEngine.CDP ? workerCapture(worker) : null;
+            long mark = capture != null ? capture.mark() : 0;
+
+            if (!worker.openInApp(company.getProfileUrl())) {
+                notifyLog("⚠️ Карточка не отрисовалась за " + TIMEOUT_SECONDS + " сек: " + company.getName());
+                return DetailFailure.TIMEOUT;
+            }
 
-            // Финальная проверка отмены перед парсингом
             if (cancelRequested.get()) {
-                threadDriver.close();
-                threadDriver.switchTo().window(originalWindow);
-                return;
+                return null;
             }
 
-            parseAdditionalInfo(company, threadDriver, threadWait);
+            if (capture != null) {
+                Object profile = capture.awaitLatest(PROFILE_MARKER, mark, CAPTURE_TIMEOUT);
+                if (profile == null) {
+                    notifyLog("⚠️ Ответ карточки не перехвачен, читаем страницу: " + company.getName());
+                } else {
+                    // Имена полей ответа не документированы: если ни одно не подошло, читаем страницу
+                    CompanyMapper.applyProfile(company, profile);
+                    if (CompanyMapper.hasDetails(company)) {
+                        return null;
+                    }
+                    notifyLog("⚠️ В ответе карточки нет детальных полей, читаем страницу: " + company.getName());
+                }
+            }
 
-            // Закрываем вкладку
-            threadDriver.close();
-            threadDriver.switchTo().window(originalWindow);
+            return parseProfileDetails(company, threadDriver, threadWait);
 
         } catch (Exception e) {
+            DetailFailure failure = DetailFailure.classify(e);
             if (!cancelRequested.get()) {
-                notifyLog("❌ Ошибка при парсинге детальной информации для " + company.getName() + ": " + e.getMessage());
+                notifyLog("❌ Ошибка при парсинге детальной информации для " + company.getName()
+                        + " (" + failure.getTitle() + "): " + e.getMessage());
+            }
+            return failure;
+        }
+    }
+
+    private XhrCapture workerCapture(DetailWorker worker) {
+        try {
+            return worker.capture(PROFILE_MARKER);
+        } catch (Exception e) {
+            notifyLog("⚠️ DevTools недоступен в браузере #" + worker.getId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Детальные блоки карточки: одним скриптом, при сбое — прежним поэлементным разбором.
+     * Возвращает null при успехе и MISSING_BLOCK, если отрисованная карточка не дала ни одного детального поля
+     * (разбор блоков ошибки не бросает, и без этой проверки пустая карточка сохранилась бы как загруженная).
+     */
+    private DetailFailure parseProfileDetails(Company company, WebDriver driver, WebDriverWait wait) throws InterruptedException {
+        Map<?, ?> blocks = extractDetailBlocks(driver);
+        if (blocks != null) {
+            if (!Boolean.TRUE.equals(blocks.get("expanded"))) {
+                notifyLog("⚠️ Не удалось найти кнопку 'Дополнительная информация', продолжаем парсинг...");
+            }
+            CompanyMapper.applyDetailBlocks(company, blocks);
+            if (company.getEmail() != null) {
+                notifyLog("✅ Найден email: " + company.getEmail());
+            } else {
+                notifyLog("⚠️ Email не найден для " + company.getName());
+            }
+        } else {
+            clickAdditionalInfoButton(driver, wait);
+            new PageReadiness(driver).settled();
+
+            // Финальная проверка отмены перед парсингом
+            if (cancelRequested.get()) {
+                return null;
             }
+
+            parseAdditionalInfo(company, driver, wait);
+        }
+
+        if (!CompanyMapper.hasDetails(company) && !cancelRequested.get()) {
+            notifyLog("⚠️ На карточке не найдено ни одного блока с данными: " + company.getName());
+            return DetailFailure.MISSING_BLOCK;
+        }
+        return null;
+    }
+
+    private Map<?, ?> extractDetailBlocks(WebDriver driver) {
+        try {
+            Object raw = ((JavascriptExecutor) driver).executeAsyncScript(DETAIL_BLOCKS_SCRIPT, DETAIL_SCRIPT_TIMEOUT_MS);
+            return raw instanceof Map ? (Map<?, ?>) raw : null;
+        } catch (Exception e) {
+            notifyLog("⚠️ Пакетное чтение карточки не удалось, разбираем поэлементно: " + e.getMessage());
+            return null;
         }
     }
 
@@ -874,7 +2005,6 @@ public class DomGosuslugiParser {
                 try {
                     if (button.isDisplayed() && button.isEnabled()) {
                         ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", button);
-                        sleep(1000);
                         button.click();
                         return;
                     }
@@ -941,6 +2071,8 @@ public class DomGosuslugiParser {
                 notifyLog("❌ Информация о приёме не найдена для " + company.getName());
             }
 
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("❌ Ошибка парсинга информации о приёме для " + company.getName() + ": " + e.getMessage());
         }
@@ -1023,6 +2155,8 @@ public class DomGosuslugiParser {
                 String existing = company.getNotes() != null ? company.getNotes() : "";
                 company.setNotes((existing.isEmpty() ? "" : (existing + "\n")) + staffNotes.toString().trim());
             }
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("Ошибка парсинга часов приёма: " + e.getMessage());
         }
@@ -1057,6 +2191,8 @@ public class DomGosuslugiParser {
             } else {
                 notifyLog("❌ Информация о руководителе не найдена");
             }
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             company.setDirectorInfo("Ошибка парсинга");
             notifyLog("❌ Ошибка парсинга информации о руководителе: " + e.getMessage());
@@ -1076,6 +2212,8 @@ public class DomGosuslugiParser {
             } else {
                 notifyLog("⚠️ Email не найден для " + company.getName());
             }
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("❌ Ошибка парсинга email для " + company.getName() + ": " + e.getMessage());
         }
@@ -1086,6 +2224,8 @@ public class DomGosuslugiParser {
             WebElement el = (scope == null) ? driver.findElement(by) : scope.findElement(by);
             String t = el.getText();
             return t == null ? "" : t.trim();
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             return "";
         }
@@ -1101,6 +2241,8 @@ public class DomGosuslugiParser {
         return s == null ? "" : s.trim();
     }
 
+    // Ошибки отдельных блоков логируются и не прерывают разбор; устаревший элемент (карточка перерисовалась)
+    // пробрасывается из всех блоков, чтобы карточку повторили
     private void parseAdditionalInfo(Company company, WebDriver driver, WebDriverWait wait) {
         try {
             parseReceptionBeforeHours(company, driver, wait); // Прием граждан: лицо/адрес/телефоны
@@ -1108,6 +2250,8 @@ public class DomGosuslugiParser {
             parseDirectorInfo(company, driver, wait);         // Руководитель
             parseEmailInfo(company, driver, wait);           // Email
             parseNotesInfo(company, driver, wait);            // Примечания
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("❌ Не удалось найти дополнительную информацию для " + company.getName() + ": " + e.getMessage());
         }
@@ -1124,6 +2268,8 @@ public class DomGosuslugiParser {
             if (!notes.isEmpty()) {
                 company.setNotes(notes.toString().trim());
             }
+        } catch (StaleElementReferenceException e) {
+            throw e;
         } catch (Exception e) {
             notifyLog("❌ Ошибка парсинга примечаний: " + e.getMessage());
         }
@@ -1159,256 +2305,44 @@ public class DomGosuslugiParser {
         return cleanedText.matches("^(понедельник|вторник|среда|четверг|пятница|суббота|воскресенье)$");
     }
 
-    private boolean goToNextPage() {
+    // Конец реестра — только отсутствие ссылки на следующую страницу; таймаут и ошибки — сбой перехода
+    private PageTurn goToNextPage() throws InterruptedException {
         try {
             WebElement currentPage = driver.findElement(By.cssSelector(".pagination .active"));
-            if (currentPage != null) {
-                String currentPageText = currentPage.getText();
-
-                int currentPageNum = Integer.parseInt(currentPageText);
-                WebElement nextPage = driver.findElement(By.xpath("//a[text()='" + (currentPageNum + 1) + "']"));
-                if (nextPage != null && nextPage.isEnabled()) {
-                    ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", nextPage);
-                    sleep(1000);
-                    nextPage.click();
-
-                    // Ждем загрузки новой страницы
-                    wait.until(ExpectedConditions.presenceOfAllElementsLocatedBy(
-                            By.cssSelector("ef-poch-ro-row[ng-repeat='organization in organizations'] .register-card")));
-                    sleep(2000);
-
-                    notifyLog("➡️ Переход на страницу " + (currentPageNum + 1));
-                    return true;
-                }
+            int currentPageNum = Integer.parseInt(currentPage.getText().trim());
+            List<WebElement> nextLinks = driver.findElements(By.xpath("//a[text()='" + (currentPageNum + 1) + "']"));
+            if (nextLinks.isEmpty() || !nextLinks.get(0).isEnabled()) {
+                return PageTurn.NO_NEXT_PAGE;
             }
-            return false;
+            WebElement nextPage = nextLinks.get(0);
+            ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", nextPage);
+            readiness.markCardsStale(CARD_SELECTOR);
+            markSearch();
+            // Лимит запросов — только когда переход действительно будет
+            throttle(RateGovernor.Stage.LIST);
+            nextPage.click();
+
+            // Ждем, пока страница станет активной и вместо прежних карточек придут новые
+            if (!readiness.activePage(currentPageNum + 1, PageReadiness.PAGE_TIMEOUT)) {
+                notifyLog("⚠️ Страница " + (currentPageNum + 1) + " не открылась за " + PageReadiness.PAGE_TIMEOUT.toSeconds() + " сек");
+                return PageTurn.FAILED;
+            }
+            readiness.cardsLoaded(CARD_SELECTOR, PageReadiness.CARDS_TIMEOUT);
+
+            notifyLog("➡️ Переход на страницу " + (currentPageNum + 1));
+            return PageTurn.MOVED;
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
-            // Просто возвращаем false - страницы закончились
-            return false;
+            notifyLog("❌ Ошибка перехода на следующую страницу: " + e.getMessage());
+            return PageTurn.FAILED;
         }
     }
 
-    private void createHeaders(Sheet sheet, Workbook workbook) {
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-                "Наименование", "Вид организации", "Фактический адрес", "Сайт", "Телефон",
-                "Email", "Информация о приёме", "Часы приёма", "Перерыв", "Примечание",
-                "Руководитель", "Ссылка на карточку"
-        };
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-        }
-    }
-
-    private void createCompanyRow(Row row, Company company, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
-        Cell nameCell = row.createCell(0);
-        nameCell.setCellValue(company.getName() != null ? company.getName() : "");
-        nameCell.setCellStyle(defaultStyle);
-
-        setCellValue(row, 1, company.getType(), defaultStyle);
-        setCellValue(row, 2, company.getAddress(), defaultStyle);
-        setCellValue(row, 3, company.getWebsite(), defaultStyle);
-        setCellValue(row, 4, company.getPhone(), defaultStyle);
-        setCellValue(row, 5, company.getEmail(), defaultStyle);
-        setCellValue(row, 6, company.getReceptionInfo(), defaultStyle);
-        setCellValue(row, 7, company.getReceptionHours(), defaultStyle);
-        setCellValue(row, 8, company.getBreakTimes(), defaultStyle);
-        setCellValue(row, 9, company.getNotes(), defaultStyle);
-        setCellValue(row, 10, company.getDirectorInfo(), defaultStyle);
-
-        Cell linkCell = row.createCell(11);
-        if (company.getProfileUrl() != null && !company.getProfileUrl().isEmpty()) {
-            linkCell.setCellValue("Открыть карточку");
-            Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
-            link.setAddress(company.getProfileUrl());
-            linkCell.setHyperlink(link);
-            linkCell.setCellStyle(linkStyle);
-        } else {
-            linkCell.setCellValue("Нет ссылки");
-            linkCell.setCellStyle(defaultStyle);
-        }
-    }
-
-    private void updateCompanyRow(Row row, Company company, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
-        setCellValue(row, 1, company.getType(), defaultStyle);
-        setCellValue(row, 2, company.getAddress(), defaultStyle);
-        setCellValue(row, 3, company.getWebsite(), defaultStyle);
-        setCellValue(row, 4, company.getPhone(), defaultStyle);
-        setCellValue(row, 5, company.getEmail(), defaultStyle);
-        setCellValue(row, 6, company.getReceptionInfo(), defaultStyle);
-        setCellValue(row, 7, company.getReceptionHours(), defaultStyle);
-        setCellValue(row, 8, company.getBreakTimes(), defaultStyle);
-        setCellValue(row, 9, company.getNotes(), defaultStyle);
-        setCellValue(row, 10, company.getDirectorInfo(), defaultStyle);
-
-        Cell linkCell = row.getCell(11);
-        if (linkCell == null) {
-            linkCell = row.createCell(11);
-        }
-        if (company.getProfileUrl() != null && !company.getProfileUrl().isEmpty()) {
-            linkCell.setCellValue("Открыть карточку");
-            Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
-            link.setAddress(company.getProfileUrl());
-            linkCell.setHyperlink(link);
-            linkCell.setCellStyle(linkStyle);
-        } else {
-            linkCell.setCellValue("Нет ссылки");
-            linkCell.setCellStyle(defaultStyle);
-        }
-    }
-
-    private void setCellValue(Row row, int cellIndex, String value, CellStyle style) {
-        Cell cell = row.getCell(cellIndex);
-        if (cell == null) {
-            cell = row.createCell(cellIndex);
-        }
-        cell.setCellValue(value != null ? value : "");
-        cell.setCellStyle(style);
-    }
-
-    private CellStyle createHeaderStyle(Workbook workbook) {
-        CellStyle headerStyle = workbook.createCellStyle();
-        Font headerFont = workbook.createFont();
-        headerFont.setFontName("Times New Roman");
-        headerFont.setFontHeightInPoints((short) 12);
-        headerFont.setBold(true);
-        headerStyle.setFont(headerFont);
-        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        headerStyle.setWrapText(true);
-        headerStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return headerStyle;
-    }
-
-    private CellStyle createDefaultStyle(Workbook workbook) {
-        CellStyle defaultStyle = workbook.createCellStyle();
-        Font defaultFont = workbook.createFont();
-        defaultFont.setFontName("Times New Roman");
-        defaultFont.setFontHeightInPoints((short) 12);
-        defaultStyle.setFont(defaultFont);
-        defaultStyle.setWrapText(true);
-        defaultStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return defaultStyle;
-    }
-
-    private CellStyle createLinkStyle(Workbook workbook) {
-        CellStyle linkStyle = workbook.createCellStyle();
-        Font linkFont = workbook.createFont();
-        linkFont.setFontName("Times New Roman");
-        linkFont.setFontHeightInPoints((short) 12);
-        linkFont.setUnderline(Font.U_SINGLE);
-        linkFont.setColor(IndexedColors.BLUE.getIndex());
-        linkStyle.setFont(linkFont);
-        linkStyle.setWrapText(true);
-        linkStyle.setVerticalAlignment(VerticalAlignment.TOP);
-        return linkStyle;
-    }
-
+    // Остаток данных дописывается, xlsx собирается из журнала строк один раз
     private void saveToExcel() {
-        if (companies.isEmpty()) {
-            notifyLog("❌ Нет данных для сохранения");
-            return;
-        }
-
-        boolean fileExists = false;
-        String fileName = "Управляющие компании " + region + " " + LocalDate.now().getYear() + ".xlsx";
-
-        if (new File("Управляющие компании " + region + " " + LocalDate.now().minusYears(1).getYear() + ".xlsx").exists()) {
-            fileExists = true;
-            fileName = "Управляющие компании " + region + " " + LocalDate.now().minusYears(1).getYear() + ".xlsx";
-        } else if (new File("Управляющие компании " + region + " " + LocalDate.now().getYear() + ".xlsx").exists()) {
-            fileExists = true;
-        }
-
-        try {
-            Workbook workbook;
-            Sheet sheet;
-
-            if (fileExists) {
-                try (FileInputStream fis = new FileInputStream(fileName)) {
-                    workbook = new XSSFWorkbook(fis);
-                }
-                sheet = workbook.getSheet("Компании");
-                if (sheet == null) {
-                    sheet = workbook.createSheet("Компании");
-                    createHeaders(sheet, workbook);
-                }
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Компании");
-                createHeaders(sheet, workbook);
-            }
-
-            CellStyle defaultStyle = createDefaultStyle(workbook);
-            CellStyle linkStyle = createLinkStyle(workbook);
-
-            Map<String, Integer> existingCompanies = new HashMap<>();
-            if (fileExists && sheet.getPhysicalNumberOfRows() > 1) {
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row != null && row.getCell(0) != null) {
-                        String companyName = row.getCell(0).getStringCellValue();
-                        if (companyName != null && !companyName.trim().isEmpty()) {
-                            existingCompanies.put(companyName.trim(), i);
-                        }
-                    }
-                }
-            }
-
-            CreationHelper createHelper = workbook.getCreationHelper();
-            int newRowsCount = 0;
-            int updatedRowsCount = 0;
-
-            for (Company company : companies) {
-                if (company.getName() == null || company.getName().trim().isEmpty()) {
-                    continue;
-                }
-
-                String companyName = company.getName().trim();
-                Integer existingRowIndex = existingCompanies.get(companyName);
-
-                if (existingRowIndex != null) {
-                    updateCompanyRow(sheet.getRow(existingRowIndex), company, defaultStyle, linkStyle, createHelper);
-                    updatedRowsCount++;
-                } else {
-                    int newRowIndex = sheet.getLastRowNum() + 1;
-                    Row row = sheet.createRow(newRowIndex);
-                    createCompanyRow(row, company, defaultStyle, linkStyle, createHelper);
-                    newRowsCount++;
-                }
-            }
-
-            for (int i = 0; i < 11; i++) {
-                sheet.autoSizeColumn(i);
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 512);
-            }
-
-            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    row.setHeight((short) -1);
-                }
-            }
-
-            sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, 11));
-
-            try (FileOutputStream fos = new FileOutputStream("Управляющие компании " + region + " " + LocalDate.now().getYear() + ".xlsx")) {
-                workbook.write(fos);
-            }
-
-            workbook.close();
-
-            notifyLog("💾 Данные " + (fileExists ? "обновлены" : "сохранены") + " в файл: " + fileName);
-            if (fileExists) {
-                notifyLog("📊 Обновлено: " + updatedRowsCount + " записей, Добавлено: " + newRowsCount + " новых записей");
-            }
-
-        } catch (IOException e) {
-            notifyLog("❌ Ошибка сохранения в Excel: " + e.getMessage());
-        }
+        saveIntermediateResults();
+        finishOutput();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,162 @@
+package com.parser;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP-клиент к JSON-бэкенду dom.gosuslugi.ru без браузера.
+ * Один HttpClient на запуск (keep-alive / HTTP/2), число одновременных запросов ограничено семафором,
+ * частота — общим {@link RateGovernor} (карточки организаций — этап DETAIL, остальное — LIST).
+ * Базовый адрес задаётся снаружи, чтобы движки можно было направить на локальный сервер с записанными ответами.
+ */
+public class GosuslugiHttpClient implements AutoCloseable {
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // Адрес сайта для ссылок на карточки: они ведут на сайт, даже если запросы идут на локальный сервер
+    public static final String SITE_URL = "https://dom.gosuslugi.ru";
+    static final String REGIONS_PATH = "/nsi/api/rest/services/nsi/fias/v4/regions";
+
+    private final String baseUrl;
+    private final String stateGuid;
+    private final String sessionGuid = UUID.randomUUID().toString();
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final HttpClient http;
+    private final Json json = new Json();
+    private final RateGovernor.Delays rateDelays = new RateGovernor.Delays();
+
+    /**
+     * @param baseUrl        например https://dom.gosuslugi.ru
+     * @param stateGuid      маршрут страницы реестра, от имени которой идут запросы (заголовок State-GUID)
+     * @param maxConcurrency максимум одновременных запросов
+     */
+    public GosuslugiHttpClient(String baseUrl, String stateGuid, int maxConcurrency) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.stateGuid = stateGuid;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), r -> {
+            Thread t = new Thread(r, "http-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(15))
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    // Ожидание лимита запросов этим клиентом с прошлого отчёта
+    public RateGovernor.Delays getRateDelays() {
+        return rateDelays;
+    }
+
+    public Object getJson(String path) throws IOException, InterruptedException {
+        return getJson(path, RateGovernor.Stage.LIST);
+    }
+
+    public Object getJson(String path, RateGovernor.Stage stage) throws IOException, InterruptedException {
+        return send(newRequest(path).GET().build(), stage);
+    }
+
+    public Object postJson(String path, Object body) throws IOException, InterruptedException {
+        return send(newRequest(path)
+                .header("Content-Type", "application/json;charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toJson(body), StandardCharsets.UTF_8))
+                .build(), RateGovernor.Stage.LIST);
+    }
+
+    // Асинхронные варианты для параллельной загрузки карточек и страниц
+    public CompletableFuture<Object> getJsonAsync(String path) {
+        return getJsonAsync(path, RateGovernor.Stage.LIST);
+    }
+
+    public CompletableFuture<Object> getJsonAsync(String path, RateGovernor.Stage stage) {
+        return async(path, () -> getJson(path, stage));
+    }
+
+    public CompletableFuture<Object> postJsonAsync(String path, Object body) {
+        return async(path, () -> postJson(path, body));
+    }
+
+    // Справочник регионов (общий для обоих реестров): название -> код, в порядке справочника
+    public Map<String, String> fetchRegions() throws IOException, InterruptedException {
+        Map<String, String> regions = new LinkedHashMap<>();
+        for (Map<?, ?> item : JsonValues.items(getJson(REGIONS_PATH), "items", "regions")) {
+            String name = JsonValues.str(item, "name", "regionName", "offName");
+            if (name.isEmpty()) {
+                name = (JsonValues.str(item, "formalName") + " " + JsonValues.str(item, "shortName")).trim();
+            }
+            String code = JsonValues.str(item, "code", "regionCode", "aoGuid", "guid");
+            if (!name.isEmpty() && !code.isEmpty()) regions.put(name, code);
+        }
+        return regions;
+    }
+
+    private interface JsonCall {
+        Object call() throws IOException, InterruptedException;
+    }
+
+    private CompletableFuture<Object> async(String path, JsonCall call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Запрос прерван: " + path, e);
+            }
+        }, executor);
+    }
+
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json, text/plain, */*")
+                .header("User-Agent", USER_AGENT)
+                // Те же служебные заголовки, что отправляет Angular-приложение реестра
+                .header("Session-GUID", sessionGuid)
+                .header("Request-GUID", UUID.randomUUID().toString())
+                .header("State-GUID", stateGuid);
+    }
+
+    private Object send(HttpRequest request, RateGovernor.Stage stage) throws IOException, InterruptedException {
+        RateGovernor.shared().acquire(stage, rateDelays);
+        permits.acquire();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("HTTP " + response.statusCode() + " для " + request.uri());
+            }
+            String body = response.body();
+            return (body == null || body.isBlank()) ? null : json.toType(body, Json.OBJECT_TYPE);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package com.parser;
+
+import java.util.Map;
+
+/**
+ * Заполнение {@link House} из структурированных данных реестра объектов жилищного фонда.
+ * Ссылка на карточку строится так же, как в DomGosuslugiHousesParser.findCardUrl: guid + houseType.code.
+ */
+final class HouseMapper {
+    static final String PROFILE_ROUTE = "/#!/house-view?guid=";
+
+    private HouseMapper() {
+    }
+
+    static String profileUrl(String baseUrl, String guid, String typeCode) {
+        if (guid == null || guid.isEmpty()) return "";
+        return baseUrl + PROFILE_ROUTE + guid + "&typeCode=" + (typeCode == null || typeCode.isEmpty() ? "1" : typeCode);
+    }
+
+    // Дом из результата пакетного скрипта карточек (address, guid, typeCode и поля таблицы)
+    static House fromCardMap(Map<?, ?> card, String baseUrl) {
+        House house = new House();
+        house.setAddress(JsonValues.str(card, "address"));
+        house.setCommissioningYear(nullIfEmpty(JsonValues.str(card, "commissioningYear")));
+        house.setFloorsCount(nullIfEmpty(JsonValues.str(card, "floorsCount")));
+        house.setManagementOrganization(nullIfEmpty(JsonValues.str(card, "managementOrganization")));
+        house.setPremisesCount(nullIfEmpty(JsonValues.str(card, "premisesCount")));
+        house.setProfileUrl(profileUrl(baseUrl, JsonValues.str(card, "guid"), JsonValues.str(card, "typeCode")));
+        return house;
+    }
+
+    private static String nullIfEmpty(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    // Дом из ответа поиска (тот же объект, что лежит в scope.house у карточки списка)
+    static House fromSearchItem(Map<?, ?> item, String baseUrl) {
+        House house = new House();
+        house.setAddress(JsonValues.str(item, "address.formattedAddress", "formattedAddress", "address"));
+        house.setCommissioningYear(JsonValues.str(item, "operationYear", "commissioningYear", "buildingYear"));
+        house.setFloorsCount(JsonValues.str(item, "maxFloorCount", "floorCount", "floorsCount"));
+        house.setManagementOrganization(JsonValues.str(item,
+                "managementOrganization.fullName", "managementOrganization.shortName", "managementOrganization"));
+
+        String living = JsonValues.str(item, "residentialPremiseCount", "livingPremisesCount");
+        String nonLiving = JsonValues.str(item, "nonResidentialPremiseCount", "nonLivingPremisesCount");
+        if (!living.isEmpty() || !nonLiving.isEmpty()) {
+            house.setPremisesCount((living.isEmpty() ? "0" : living) + "/" + (nonLiving.isEmpty() ? "0" : nonLiving));
+        }
+
+        house.setProfileUrl(profileUrl(baseUrl, JsonValues.str(item, "guid", "houseGuid"), JsonValues.str(item, "houseType.code")));
+        return house;
+    }
+}
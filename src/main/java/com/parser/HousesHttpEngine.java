@@ -0,0 +1,63 @@
+package com.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Реестр объектов жилищного фонда без браузера: постраничный запрос поиска напрямую к JSON-бэкенду,
+ * результат раскладывается в {@link House}.
+ */
+public class HousesHttpEngine {
+    static final String STATE_GUID = "/houses";
+    static final String SEARCH_PATH = "/homemanagement/api/rest/services/houses/public/searchByAddress";
+
+    private final GosuslugiHttpClient client;
+
+    public record Page(int number, List<House> houses, long total) {
+    }
+
+    public HousesHttpEngine(GosuslugiHttpClient client) {
+        this.client = client;
+    }
+
+    public Page search(String regionCode, int page, int pageSize) throws IOException, InterruptedException {
+        return toPage(page, client.postJson(searchPath(page, pageSize), searchBody(regionCode)));
+    }
+
+    // Асинхронный запрос страницы; параллелизм ограничивает семафор клиента
+    public CompletableFuture<Page> searchAsync(String regionCode, int page, int pageSize) {
+        return client.postJsonAsync(searchPath(page, pageSize), searchBody(regionCode))
+                .thenApply(response -> toPage(page, response));
+    }
+
+    private String searchPath(int page, int pageSize) {
+        return SEARCH_PATH + "?pageIndex=" + page + "&elementsPerPage=" + pageSize;
+    }
+
+    private Map<String, Object> searchBody(String regionCode) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("regionCode", regionCode);
+        return body;
+    }
+
+    private Page toPage(int page, Object response) {
+        return new Page(page, housesFrom(response, GosuslugiHttpClient.SITE_URL),
+                JsonValues.number(response, "total", "totalCount", "totalElements"));
+    }
+
+    // Дома из ответа поиска — общий разбор для HTTP-движка и перехвата XHR в браузере
+    static List<House> housesFrom(Object response, String baseUrl) {
+        List<House> result = new ArrayList<>();
+        for (Map<?, ?> item : JsonValues.items(response, "items", "houses", "content")) {
+            House house = HouseMapper.fromSearchItem(item, baseUrl);
+            if (house.getAddress() != null && !house.getAddress().isBlank()) {
+                result.add(house);
+            }
+        }
+        return result;
+    }
+}
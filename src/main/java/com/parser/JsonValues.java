@@ -0,0 +1,86 @@
+package com.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Безопасное чтение полей из JSON-ответов (Map/List после разбора Json.OBJECT_TYPE)
+ * и из объектов, возвращённых executeScript.
+ */
+final class JsonValues {
+    private JsonValues() {
+    }
+
+    // Значение по пути "a.b.c"
+    static Object path(Object root, String path) {
+        Object current = root;
+        for (String key : path.split("\\.")) {
+            if (!(current instanceof Map)) return null;
+            current = ((Map<?, ?>) current).get(key);
+        }
+        return current;
+    }
+
+    // Первое непустое строковое значение из перечисленных путей
+    static String str(Object root, String... paths) {
+        for (String p : paths) {
+            String s = text(path(root, p));
+            if (!s.isEmpty()) return s;
+        }
+        return "";
+    }
+
+    // Текст значения: строки и числа как есть, у объектов — типичные поля с подписью
+    static String text(Object value) {
+        if (value == null) return "";
+        if (value instanceof String) return ((String) value).trim();
+        if (value instanceof Number || value instanceof Boolean) {
+            String s = value.toString();
+            return s.endsWith(".0") ? s.substring(0, s.length() - 2) : s;
+        }
+        if (value instanceof Map) {
+            for (String key : new String[]{"formattedAddress", "name", "value", "fullName", "shortName", "title"}) {
+                String s = text(((Map<?, ?>) value).get(key));
+                if (!s.isEmpty()) return s;
+            }
+        }
+        return "";
+    }
+
+    static Map<?, ?> map(Object root, String... paths) {
+        for (String p : paths) {
+            Object v = path(root, p);
+            if (v instanceof Map) return (Map<?, ?>) v;
+        }
+        return Collections.emptyMap();
+    }
+
+    static List<?> list(Object root, String... paths) {
+        for (String p : paths) {
+            Object v = path(root, p);
+            if (v instanceof List) return (List<?>) v;
+        }
+        return Collections.emptyList();
+    }
+
+    // Список объектов из ответа поиска: сам массив или первое поле-массив из перечисленных
+    static List<Map<?, ?>> items(Object response, String... paths) {
+        List<?> raw = response instanceof List ? (List<?>) response : list(response, paths);
+        List<Map<?, ?>> result = new ArrayList<>();
+        for (Object o : raw) {
+            if (o instanceof Map) result.add((Map<?, ?>) o);
+        }
+        return result;
+    }
+
+    static long number(Object root, String... paths) {
+        for (String p : paths) {
+            Object v = path(root, p);
+            if (v instanceof Number) return ((Number) v).longValue();
+            if (v instanceof String && ((String) v).trim().matches("\\d+")) return Long.parseLong(((String) v).trim());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,123 @@
+package com.parser;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Реестр поставщиков информации без браузера: те же запросы поиска и карточки организации,
+ * что делает Angular-страница TARGET_URL, результат раскладывается в {@link Company}.
+ */
+public class OrganizationsHttpEngine {
+    static final String STATE_GUID = "/organizations";
+    static final String SEARCH_PATH = "/ppa/api/rest/services/ppa/public/organizations/searchByOrg";
+    static final String PROFILE_PATH = "/ppa/api/rest/services/ppa/public/organizations/orgByGuid?organizationGuid=";
+    // Маршрут карточки организации в приложении (для колонки "Ссылка на карточку")
+    static final String PROFILE_ROUTE = "/#!/organization?organizationGuid=";
+    // Те же виды организаций, что в TARGET_URL (orgType=1&orgType=19&...)
+    private static final int[] ORG_TYPES = {1, 19, 22, 21, 20};
+
+    private final GosuslugiHttpClient client;
+    private final Consumer<String> log;
+
+    public record Page(List<Company> companies, long total) {
+    }
+
+    public OrganizationsHttpEngine(GosuslugiHttpClient client, Consumer<String> log) {
+        this.client = client;
+        this.log = log;
+    }
+
+    public Page search(String regionCode, int page, int pageSize) throws IOException, InterruptedException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("regionCodes", regionCode != null ? List.of(regionCode) : List.of());
+        List<Integer> types = new ArrayList<>();
+        for (int t : ORG_TYPES) types.add(t);
+        body.put("organizationTypes", types);
+
+        Object response = client.postJson(SEARCH_PATH + "?pageIndex=" + page + "&elementsPerPage=" + pageSize, body);
+        return new Page(companiesFrom(response, GosuslugiHttpClient.SITE_URL),
+                JsonValues.number(response, "total", "totalCount", "totalElements"));
+    }
+
+    // Организации из ответа поиска — общий разбор для HTTP-движка и перехвата XHR в браузере
+    static List<Company> companiesFrom(Object response, String baseUrl) {
+        List<Company> result = new ArrayList<>();
+        for (Map<?, ?> item : JsonValues.items(response, "items", "organizationSummaryWithNsiList", "organizations", "content")) {
+            String guid = CompanyMapper.guid(item);
+            String url = guid.isEmpty() ? "" : baseUrl + PROFILE_ROUTE + URLEncoder.encode(guid, StandardCharsets.UTF_8);
+            Company company = CompanyMapper.fromSearchItem(item, url);
+            if (company.getName() != null && !company.getName().isBlank()) {
+                result.add(company);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Параллельно загружает карточки организаций страницы и дописывает детальные поля.
+     * Ошибка одной карточки не прерывает остальные; возвращает классы ошибок не загруженных карточек
+     * (повторы и файл ошибок — у вызывающего, как в браузерном режиме).
+     */
+    public Map<Company, DetailFailure> enrich(List<Company> companies, AtomicBoolean cancelRequested) throws InterruptedException {
+        // Поля карточки меняются при загрузке, поэтому ключи — по ссылке на объект
+        Map<Company, DetailFailure> failures = Collections.synchronizedMap(new IdentityHashMap<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Company company : companies) {
+            String guid = guidFromProfileUrl(company.getProfileUrl());
+            if (guid.isEmpty()) {
+                log.accept("❌ Пустая ссылка для компании: " + company.getName());
+                continue;
+            }
+            futures.add(client.getJsonAsync(PROFILE_PATH + URLEncoder.encode(guid, StandardCharsets.UTF_8), RateGovernor.Stage.DETAIL)
+                    .thenAccept(profile -> CompanyMapper.applyProfile(company, profile))
+                    .exceptionally(ex -> {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        failures.put(company, DetailFailure.classify(cause));
+                        if (!cancelRequested.get()) {
+                            log.accept("❌ Ошибка парсинга деталей для " + company.getName() + ": " + cause.getMessage());
+                        }
+                        return null;
+                    }));
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        while (true) {
+            try {
+                all.get(1, TimeUnit.SECONDS);
+                return failures;
+            } catch (TimeoutException e) {
+                if (cancelRequested.get()) {
+                    futures.forEach(f -> f.cancel(true));
+                    throw new InterruptedException("Операция отменена пользователем");
+                }
+            } catch (ExecutionException e) {
+                // ошибки отдельных карточек уже залогированы и учтены
+                return failures;
+            }
+        }
+    }
+
+    static String guidFromProfileUrl(String url) {
+        if (url == null) return "";
+        int at = url.indexOf("organizationGuid=");
+        if (at < 0) return "";
+        String value = url.substring(at + "organizationGuid=".length());
+        int end = value.indexOf('&');
+        if (end >= 0) value = value.substring(0, end);
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
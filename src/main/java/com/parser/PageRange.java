@@ -0,0 +1,41 @@
+package com.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Диапазон страниц списка (включительно) для одной сессии браузера в режиме шардирования.
+ */
+public record PageRange(int first, int last) {
+
+    public int size() {
+        return last - first + 1;
+    }
+
+    /**
+     * Делит страницы from..to на parts смежных диапазонов почти равной длины.
+     * Диапазонов не больше, чем страниц.
+     */
+    public static List<PageRange> split(int from, int to, int parts) {
+        List<PageRange> result = new ArrayList<>();
+        int pages = to - from + 1;
+        if (pages <= 0) {
+            return result;
+        }
+        int n = Math.max(1, Math.min(parts, pages));
+        int base = pages / n;
+        int extra = pages % n;
+        int first = from;
+        for (int i = 0; i < n; i++) {
+            int len = base + (i < extra ? 1 : 0);
+            result.add(new PageRange(first, first + len - 1));
+            first += len;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return first + "–" + last;
+    }
+}
@@ -0,0 +1,175 @@
+package com.parser;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Ожидание реальной готовности страницы вместо фиксированных sleep: простой $http у Angular,
+ * затишье DOM по MutationObserver, новые карточки на месте прежних, активная страница пагинации.
+ * У каждого условия свой таймаут; по истечении метод возвращает false, а решение — продолжать
+ * или повторять — остаётся за парсером.
+ */
+public class PageReadiness {
+    // Таймауты по условиям
+    public static final Duration APP_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration IDLE_TIMEOUT = Duration.ofSeconds(15);
+    public static final Duration CARDS_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration PAGE_TIMEOUT = Duration.ofSeconds(20);
+    public static final Duration SETTLE_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration QUIET_PERIOD = Duration.ofMillis(300);
+
+    private static final Duration POLL = Duration.ofMillis(100);
+
+    private static final String APP_BOOTSTRAPPED_SCRIPT =
+            "if (document.readyState !== 'complete') return false;" +
+            "try { return !!(window.angular && angular.element(document.body).injector()); } catch (e) { return false; }";
+
+    // Нет незавершённых запросов $http (если Angular ещё не поднят — считаем, что не готово)
+    private static final String ANGULAR_IDLE_SCRIPT =
+            "if (document.readyState !== 'complete') return false;" +
+            "try {" +
+            "  var inj = window.angular && angular.element(document.body).injector();" +
+            "  if (!inj) return false;" +
+            "  return inj.get('$http').pendingRequests.length === 0;" +
+            "} catch (e) { return true; }";
+
+    // Перед переходом: текущие карточки помечаются устаревшими, запоминаются их число и текст первой
+    private static final String MARK_STALE_SCRIPT =
+            "var cards = document.querySelectorAll(arguments[0]);" +
+            "for (var i = 0; i < cards.length; i++) cards[i].setAttribute('data-parser-stale', '1');" +
+            "window.__parserStale = {count: cards.length, first: cards.length ? cards[0].textContent : null};";
+
+    // Карточки есть и это уже не те, что были до перехода: помеченных не осталось, сменилась первая или их число
+    private static final String NEW_CARDS_SCRIPT =
+            "var cards = document.querySelectorAll(arguments[0]);" +
+            "if (!cards.length) return false;" +
+            "var stale = window.__parserStale;" +
+            "if (!stale) return true;" +
+            "if (cards.length !== stale.count || cards[0].textContent !== stale.first) return true;" +
+            "for (var i = 0; i < cards.length; i++) { if (cards[i].hasAttribute('data-parser-stale')) return false; }" +
+            "return true;";
+
+    private static final String CLEAR_STALE_SCRIPT = "window.__parserStale = null;";
+
+    // Ждём, пока в DOM не будет изменений quietMs подряд (или истечёт timeoutMs); результат — дождались ли тишины
+    private static final String DOM_SETTLED_SCRIPT =
+            "var quietMs = arguments[0], timeoutMs = arguments[1];" +
+            "var done = arguments[arguments.length - 1];" +
+            "var start = Date.now(), last = Date.now();" +
+            "var observer = new MutationObserver(function () { last = Date.now(); });" +
+            "observer.observe(document.body, {childList: true, subtree: true, characterData: true, attributes: true});" +
+            "(function poll() {" +
+            "  var now = Date.now();" +
+            "  if (now - last >= quietMs) { observer.disconnect(); done(true); }" +
+            "  else if (now - start >= timeoutMs) { observer.disconnect(); done(false); }" +
+            "  else setTimeout(poll, 50);" +
+            "})();";
+
+    private static final String ACTIVE_PAGE_SCRIPT =
+            "var a = document.querySelector(\".pagination .active, .current-page, [aria-current='page']\");" +
+            "return a ? (a.textContent || '').trim() : null;";
+
+    private final WebDriver driver;
+
+    public PageReadiness(WebDriver driver) {
+        this.driver = driver;
+    }
+
+    // Документ загружен и Angular-приложение поднято
+    public boolean appBootstrapped(Duration timeout) {
+        return until(timeout, d -> Boolean.TRUE.equals(js().executeScript(APP_BOOTSTRAPPED_SCRIPT)));
+    }
+
+    public boolean angularIdle(Duration timeout) {
+        return until(timeout, d -> Boolean.TRUE.equals(js().executeScript(ANGULAR_IDLE_SCRIPT)));
+    }
+
+    public boolean domSettled(Duration quiet, Duration timeout) {
+        try {
+            Object settled = js().executeAsyncScript(DOM_SETTLED_SCRIPT, quiet.toMillis(), timeout.toMillis());
+            return Boolean.TRUE.equals(settled);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Вызывается перед кликом по пагинации, поиску или размеру страницы: пока старые карточки в DOM,
+     * {@link #cardsLoaded} их не примет (класс .active у пагинации меняется сразу по клику, а ответ ещё в пути).
+     */
+    public void markCardsStale(String selector) {
+        try {
+            js().executeScript(MARK_STALE_SCRIPT, selector);
+        } catch (RuntimeException ignore) {
+            // страница без карточек — ждать будем просто появления карточек
+        }
+    }
+
+    /**
+     * Список отрисован: карточки есть, они не помечены устаревшими ({@link #markCardsStale})
+     * и $http простаивает. После этого ждём затишья DOM.
+     */
+    public boolean cardsLoaded(String selector, Duration timeout) {
+        boolean loaded = until(timeout, d -> Boolean.TRUE.equals(js().executeScript(NEW_CARDS_SCRIPT, selector))
+                && Boolean.TRUE.equals(js().executeScript(ANGULAR_IDLE_SCRIPT)));
+        if (loaded) {
+            domSettled(QUIET_PERIOD, SETTLE_TIMEOUT);
+            forgetStaleCards();
+        }
+        return loaded;
+    }
+
+    // Переход не состоялся — на экране по-прежнему актуальные карточки
+    public void forgetStaleCards() {
+        try {
+            js().executeScript(CLEAR_STALE_SCRIPT);
+        } catch (RuntimeException ignore) {
+            // без страницы отметки нет
+        }
+    }
+
+    public boolean activePage(int page, Duration timeout) {
+        String expected = String.valueOf(page);
+        return until(timeout, d -> expected.equals(js().executeScript(ACTIVE_PAGE_SCRIPT)));
+    }
+
+    // Номер активной страницы пагинации или null, если пагинации нет
+    public Integer activePageNumber() {
+        try {
+            Object text = js().executeScript(ACTIVE_PAGE_SCRIPT);
+            return text != null && text.toString().matches("\\d+") ? Integer.valueOf(text.toString()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Простой $http и затишье DOM — после кликов по фильтрам и кнопкам
+    public boolean settled() {
+        boolean idle = angularIdle(IDLE_TIMEOUT);
+        return domSettled(QUIET_PERIOD, SETTLE_TIMEOUT) && idle;
+    }
+
+    public boolean until(Duration timeout, Function<WebDriver, Boolean> condition) {
+        try {
+            new WebDriverWait(driver, timeout, POLL).until(d -> {
+                try {
+                    return condition.apply(d);
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            });
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    private JavascriptExecutor js() {
+        return (JavascriptExecutor) driver;
+    }
+}
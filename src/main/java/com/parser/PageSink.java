@@ -0,0 +1,14 @@
+package com.parser;
+
+import java.util.List;
+
+/**
+ * Получатель готовых страниц сессии-шарда (координатор): страница уходит в его запись,
+ * onSaved выполняется, когда записи страницы на диске.
+ */
+public interface PageSink<T> {
+    void accept(List<T> page, Runnable onSaved);
+
+    // Ждёт, пока всё переданное записано и колбэки выполнены (перед закрытием журнала прогресса сессии)
+    void sync();
+}
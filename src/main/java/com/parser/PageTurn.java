@@ -0,0 +1,14 @@
+package com.parser;
+
+/**
+ * Итог перехода на следующую страницу списка. Конец реестра — только NO_NEXT_PAGE:
+ * сбой перехода не должен закрывать журнал прогресса, иначе следующий запуск начнёт регион заново.
+ */
+public enum PageTurn {
+    // Следующая страница открылась, карточки на ней новые
+    MOVED,
+    // Ссылки на следующую страницу нет — текущая последняя
+    NO_NEXT_PAGE,
+    // Ссылка есть (или страницу не удалось определить), но переход не состоялся
+    FAILED
+}
@@ -0,0 +1,50 @@
+package com.parser;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Прямой переход на страницу списка через scope директивы пагинации Angular:
+ * вызываем тот же обработчик, что висит на ng-click ссылок, но сразу с нужным номером.
+ * Время перехода не зависит от номера страницы (один запрос поиска вместо N/2 кликов).
+ */
+final class Pagination {
+    static final String JUMPED = "ok";
+
+    // Ищем в scope ссылок пагинации (и выше по $parent) функцию перехода и вызываем её внутри $apply.
+    // Результат: "ok", "no-angular" (приложение не поднято), "no-scope" (debugInfo выключен или обработчик не найден)
+    private static final String JUMP_SCRIPT =
+            "var page = arguments[0];" +
+            "if (!window.angular) return 'no-angular';" +
+            "var names = ['selectPage', 'setPage', 'goToPage', 'changePage', 'setCurrentPage'];" +
+            "var els = document.querySelectorAll(\".pagination a, .pagination, [ng-click*='Page'], [ng-click*='page']\");" +
+            "for (var i = 0; i < els.length; i++) {" +
+            "  var scope = angular.element(els[i]).scope();" +
+            "  for (var s = scope; s; s = s.$parent) {" +
+            "    for (var n = 0; n < names.length; n++) {" +
+            "      var fn = s[names[n]];" +
+            "      if (typeof fn === 'function') {" +
+            "        var target = s;" +
+            "        target.$apply(function () { fn.call(target, page); });" +
+            "        return 'ok';" +
+            "      }" +
+            "    }" +
+            "  }" +
+            "}" +
+            "return 'no-scope';";
+
+    private Pagination() {
+    }
+
+    /**
+     * Запускает переход; готовность и активную страницу проверяет вызывающий через {@link PageReadiness}.
+     */
+    static String jump(WebDriver driver, int page) {
+        try {
+            Object result = ((JavascriptExecutor) driver).executeScript(JUMP_SCRIPT, page);
+            return String.valueOf(result);
+        } catch (Exception e) {
+            return "error: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.parser;
+
+/**
+ * Способ получения данных реестра.
+ */
+public enum ParserEngine {
+    // Chrome через Selenium: открываем страницы и разбираем отрисованный DOM
+    SELENIUM("Браузер (Selenium)"),
+    // Тот же браузер, но список и карточки берутся из перехваченных через CDP JSON-ответов
+    CDP("Браузер + перехват XHR (CDP)"),
+    // Прямые запросы к JSON-бэкенду через java.net.http, без запуска браузера
+    HTTP("HTTP (без браузера)");
+
+    private final String title;
+
+    ParserEngine(String title) {
+        this.title = title;
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
@@ -1,20 +1,40 @@
 package com.parser;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.DefaultCaret;
 import java.awt.*;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ParserGUI extends JFrame implements ProgressListener {
+    private static final long serialVersionUID = 1L;
+
     private final JLabel statusLabel = new JLabel("Готово");
     private final JProgressBar pageProgress = new JProgressBar();
     private final JTextArea logArea = new JTextArea();
     private final JButton startButton = new JButton("Старт");
     private final JButton stopButton = new JButton("Стоп");
+    private final JButton exportButton = new JButton("Excel из журнала...");
     private final JSpinner startPageSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 1000, 1));
+    private final JSpinner shardsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 16, 1));
+    private final JCheckBox multiRegionCheckBox = new JCheckBox("Несколько регионов");
+    private final JSpinner regionConcurrencySpinner = new JSpinner(new SpinnerNumberModel(2, 1, 8, 1));
+    private final JSpinner detailThreadsSpinner = new JSpinner(new SpinnerNumberModel(8, 1, DetailExecutor.MAX_CONCURRENCY, 1));
+    private final JLabel concurrencyLabel = new JLabel();
+    private final JCheckBox retryDeadLettersCheckBox = new JCheckBox("Только повтор ошибок карточек");
+    private final JSpinner cacheAgeSpinner = new JSpinner(new SpinnerNumberModel(ProfileCache.DEFAULT_TTL_DAYS, 0, 3650, 1));
+    private final JCheckBox incrementalCheckBox = new JCheckBox("Только изменённые карточки", true);
     private final JComboBox<String> parserComboBox = new JComboBox<>();
+    private final JComboBox<ParserEngine> engineComboBox = new JComboBox<>(ParserEngine.values());
     private final AtomicBoolean cancelRequested = new AtomicBoolean(false);
+    // Верхняя граница регулятора потоков карточек; читается на ходу — спиннер действует и во время работы
+    private final AtomicInteger detailConcurrency = new AtomicInteger(8);
 
     private Thread workerThread;
     private String selectedRegion; // Выбранный пользователем регион
@@ -39,17 +59,58 @@ public class ParserGUI extends JFrame implements ProgressListener {
         parserComboBox.setToolTipText("Выберите тип данных для парсинга");
         settingsPanel.add(parserComboBox);
 
+        // Движок
+        settingsPanel.add(new JLabel("Движок:"));
+        engineComboBox.setToolTipText("HTTP-движок обращается к JSON-бэкенду напрямую, без запуска Chrome");
+        settingsPanel.add(engineComboBox);
+
         // Стартовая страница
         settingsPanel.add(new JLabel("Начать со страницы:"));
         startPageSpinner.setToolTipText("Номер страницы для начала парсинга (по умолчанию: 1)");
         startPageSpinner.setPreferredSize(new Dimension(80, 25));
         settingsPanel.add(startPageSpinner);
 
+        // Число параллельных сессий браузера
+        settingsPanel.add(new JLabel("Сессий:"));
+        shardsSpinner.setToolTipText("Диапазон страниц делится между указанным числом независимых браузеров (1 — без деления)");
+        shardsSpinner.setPreferredSize(new Dimension(60, 25));
+        settingsPanel.add(shardsSpinner);
+
+        // Пакетный режим по регионам
+        multiRegionCheckBox.setToolTipText("Выбрать несколько регионов (или все): у каждого своя сессия и свой файл");
+        settingsPanel.add(multiRegionCheckBox);
+        settingsPanel.add(new JLabel("Одновременно:"));
+        regionConcurrencySpinner.setToolTipText("Сколько регионов обрабатывается параллельно");
+        regionConcurrencySpinner.setPreferredSize(new Dimension(60, 25));
+        settingsPanel.add(regionConcurrencySpinner);
+
+        // Потоки карточек организаций: регулятор подбирает число сам, спиннер задаёт максимум
+        settingsPanel.add(new JLabel("Макс. потоков карточек:"));
+        detailThreadsSpinner.setToolTipText("Верхняя граница параллельных карточек организаций (по браузеру на поток); действует сразу");
+        detailThreadsSpinner.setPreferredSize(new Dimension(60, 25));
+        detailThreadsSpinner.addChangeListener(e -> detailConcurrency.set((Integer) detailThreadsSpinner.getValue()));
+        settingsPanel.add(detailThreadsSpinner);
+
+        // Повтор карточек из файла ошибок вместо полного обхода
+        retryDeadLettersCheckBox.setToolTipText("Заново загрузить только карточки организаций из файла \"Ошибки карточек.jsonl\"");
+        settingsPanel.add(retryDeadLettersCheckBox);
+
+        // Повторный обход: профили неизменившихся организаций берутся из прошлого обхода
+        incrementalCheckBox.setToolTipText("Открывать профиль только у новых и изменившихся в списке организаций");
+        settingsPanel.add(incrementalCheckBox);
+
+        // Возраст данных из кэша профилей на этот запуск; 0 — загрузить все профили заново
+        settingsPanel.add(new JLabel("Кэш профилей, дней:"));
+        cacheAgeSpinner.setToolTipText("Брать профиль из кэша, если он загружен не раньше указанного числа дней назад (0 — обновить все)");
+        cacheAgeSpinner.setPreferredSize(new Dimension(70, 25));
+        settingsPanel.add(cacheAgeSpinner);
+
         top.add(settingsPanel, BorderLayout.NORTH);
 
         JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         statusPanel.add(new JLabel("Статус:"));
         statusPanel.add(statusLabel);
+        statusPanel.add(concurrencyLabel);
         top.add(statusPanel, BorderLayout.SOUTH);
 
         // Прогресс-бар: настройка для отображения прогресса по страницам
@@ -72,7 +133,9 @@ public class ParserGUI extends JFrame implements ProgressListener {
         // Кнопки
         startButton.setToolTipText("Запустить парсинг");
         stopButton.setToolTipText("Остановить парсинг");
+        exportButton.setToolTipText("Собрать xlsx из журнала строк (*.rows) без запуска браузера");
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(exportButton);
         buttons.add(startButton);
         buttons.add(stopButton);
         stopButton.setEnabled(false);
@@ -90,6 +153,32 @@ public class ParserGUI extends JFrame implements ProgressListener {
         // Действия кнопок
         startButton.addActionListener(e -> startParsing());
         stopButton.addActionListener(e -> requestCancel());
+        exportButton.addActionListener(e -> exportRowJournal());
+    }
+
+    // Отдельный этап выгрузки: журнал строк прерванного или завершённого запуска -> xlsx
+    private void exportRowJournal() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setFileFilter(new FileNameExtensionFilter("Журнал строк (*" + ResultExport.EXTENSION + ")",
+                ResultExport.EXTENSION.substring(1)));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path journal = chooser.getSelectedFile().toPath();
+        exportButton.setEnabled(false);
+        onStatus("Выгрузка " + journal.getFileName() + "...");
+        new Thread(() -> {
+            try {
+                String summary = ResultExport.export(journal);
+                log(summary != null ? summary : "⚠️ Журнал пуст: " + journal.getFileName());
+                onStatus("Выгрузка завершена");
+            } catch (Exception ex) {
+                log("❌ Ошибка выгрузки журнала " + journal.getFileName() + ": " + ex.getMessage());
+                onStatus("Ошибка выгрузки");
+            } finally {
+                SwingUtilities.invokeLater(() -> exportButton.setEnabled(true));
+            }
+        }, "row-journal-export").start();
     }
 
     private void startParsing() {
@@ -102,7 +191,14 @@ public class ParserGUI extends JFrame implements ProgressListener {
 
         // Получаем выбранные настройки
         int startPage = (Integer) startPageSpinner.getValue();
+        int shards = (Integer) shardsSpinner.getValue();
+        boolean multiRegion = multiRegionCheckBox.isSelected();
+        boolean retryDeadLetters = retryDeadLettersCheckBox.isSelected();
+        boolean incremental = incrementalCheckBox.isSelected();
+        Duration cacheMaxAge = Duration.ofDays((Integer) cacheAgeSpinner.getValue());
+        int regionConcurrency = (Integer) regionConcurrencySpinner.getValue();
         String selectedParser = (String) parserComboBox.getSelectedItem();
+        ParserEngine engine = (ParserEngine) engineComboBox.getSelectedItem();
 
         // Сброс прогресса
         SwingUtilities.invokeLater(() -> {
@@ -124,13 +220,25 @@ public class ParserGUI extends JFrame implements ProgressListener {
                     parser.setListener(this);
                     parser.setCancellationFlag(cancelRequested);
                     parser.setStartPage(startPage);
+                    parser.setEngine(engine);
+                    parser.setShards(shards);
+                    parser.setMultiRegion(multiRegion);
+                    parser.setRegionConcurrency(regionConcurrency);
                     parser.parseHouses();
                     msg = "Парсинг объектов жилищного фонда завершён";
                 } else {
                     DomGosuslugiParser parser = new DomGosuslugiParser();
                     parser.setListener(this);
                     parser.setCancellationFlag(cancelRequested);
+                    parser.setDetailConcurrency(detailConcurrency);
                     parser.setStartPage(startPage);
+                    parser.setEngine(engine);
+                    parser.setShards(shards);
+                    parser.setMultiRegion(multiRegion);
+                    parser.setRegionConcurrency(regionConcurrency);
+                    parser.setRetryDeadLetters(retryDeadLetters);
+                    parser.setIncremental(incremental);
+                    parser.setCacheMaxAge(cacheMaxAge);
                     parser.parseOrganizations();
                     msg = "Парсинг поставщиков информации завершён";
                 }
@@ -213,6 +321,72 @@ public class ParserGUI extends JFrame implements ProgressListener {
         }
     }
 
+    // Диалог пакетного режима: несколько регионов или все сразу
+    @Override
+    public List<String> showRegionsSelectionDialog(List<String> regions) {
+        try {
+            final AtomicReference<List<String>> result = new AtomicReference<>();
+
+            SwingUtilities.invokeAndWait(() -> {
+                JDialog dialog = new JDialog(this, "Выбор регионов", true);
+                dialog.setLayout(new BorderLayout());
+                dialog.setSize(400, 500);
+                dialog.setLocationRelativeTo(this);
+
+                JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
+                contentPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+                JLabel titleLabel = new JLabel("Отметьте регионы (Ctrl/Shift — несколько):");
+                titleLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 14));
+                contentPanel.add(titleLabel, BorderLayout.NORTH);
+
+                JList<String> regionList = new JList<>(regions.toArray(new String[0]));
+                regionList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+                regionList.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+
+                JScrollPane scrollPane = new JScrollPane(regionList);
+                scrollPane.setPreferredSize(new Dimension(350, 350));
+                contentPanel.add(scrollPane, BorderLayout.CENTER);
+
+                JPanel buttonPanel = new JPanel(new FlowLayout());
+                JButton allButton = new JButton("Все регионы");
+                JButton okButton = new JButton("OK");
+                JButton cancelButton = new JButton("Отмена");
+
+                allButton.addActionListener(e -> regionList.setSelectionInterval(0, regions.size() - 1));
+
+                okButton.addActionListener(e -> {
+                    List<String> selected = regionList.getSelectedValuesList();
+                    if (!selected.isEmpty()) {
+                        result.set(selected);
+                        dialog.dispose();
+                    } else {
+                        JOptionPane.showMessageDialog(dialog, "Пожалуйста, выберите хотя бы один регион", "Внимание", JOptionPane.WARNING_MESSAGE);
+                    }
+                });
+
+                cancelButton.addActionListener(e -> {
+                    result.set(null);
+                    dialog.dispose();
+                });
+
+                buttonPanel.add(allButton);
+                buttonPanel.add(okButton);
+                buttonPanel.add(cancelButton);
+                contentPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+                dialog.add(contentPanel);
+                dialog.setVisible(true);
+            });
+
+            return result.get();
+
+        } catch (Exception e) {
+            log("❌ Ошибка при выборе регионов: " + e.getMessage());
+            return null;
+        }
+    }
+
     private void requestCancel() {
         stopButton.setEnabled(false);
         cancelRequested.set(true);
@@ -240,6 +414,14 @@ public class ParserGUI extends JFrame implements ProgressListener {
         SwingUtilities.invokeLater(() -> statusLabel.setText(text));
     }
 
+    @Override
+    public void onConcurrencyChanged(int current, int ceiling, String reason) {
+        SwingUtilities.invokeLater(() -> {
+            concurrencyLabel.setText("| Потоков карточек: " + current + " из " + ceiling);
+            concurrencyLabel.setToolTipText(reason);
+        });
+    }
+
     @Override
     public void onPageProgress(int current, int total) {
         SwingUtilities.invokeLater(() -> {
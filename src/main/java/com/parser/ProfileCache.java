@@ -0,0 +1,206 @@
+package com.parser;
+
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonOutput;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Общий на процесс дисковый кэш данных профилей по ссылке на карточку (Company/House.getProfileUrl()):
+ * по файлу JSON на ссылку в каталоге кэша, с временем сохранения и извлечёнными полями.
+ * Запись старше срока годности не выдаётся (срок можно сократить на запуск, 0 — загрузить всё заново).
+ * Суммарный размер ограничен, при превышении удаляются давно не читавшиеся записи (LRU по времени изменения файла).
+ * Каталог, срок (в днях) и размер (в МБ) задаются системными свойствами gosuslugi.cache.dir,
+ * gosuslugi.cache.ttl.days и gosuslugi.cache.max.mb.
+ */
+public final class ProfileCache {
+    public static final String DIR_PROPERTY = "gosuslugi.cache.dir";
+    public static final String TTL_PROPERTY = "gosuslugi.cache.ttl.days";
+    public static final String MAX_MB_PROPERTY = "gosuslugi.cache.max.mb";
+    private static final String DEFAULT_DIR = "Кэш профилей";
+    public static final int DEFAULT_TTL_DAYS = 30;
+    private static final long DEFAULT_MAX_MB = 256;
+    private static final String EXTENSION = ".json";
+
+    private static ProfileCache shared;
+
+    private final Path dir;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final Json json = new Json();
+    // Имя файла -> размер; порядок доступа: в начале давно не читавшиеся записи
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private ProfileCache(Path dir, Duration ttl, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> cached = files.filter(f -> f.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(ProfileCache::lastModified))
+                    .toList();
+            for (Path file : cached) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+        }
+    }
+
+    /**
+     * Кэш процесса: открывается при первом обращении, дальше общий для сессий, регионов и обоих реестров.
+     */
+    public static synchronized ProfileCache shared() throws IOException {
+        if (shared == null) {
+            String dir = System.getProperty(DIR_PROPERTY);
+            shared = new ProfileCache(Path.of(dir == null || dir.isBlank() ? DEFAULT_DIR : dir),
+                    Duration.ofDays(number(TTL_PROPERTY, DEFAULT_TTL_DAYS)),
+                    number(MAX_MB_PROPERTY, DEFAULT_MAX_MB) * 1024 * 1024);
+        }
+        return shared;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Поля профиля не старше maxAge (не дольше срока годности кэша; null — срок годности);
+     * null, если записи нет или она устарела.
+     */
+    public Map<String, String> get(String profileUrl, Duration maxAge) {
+        if (profileUrl == null || profileUrl.isEmpty()) return null;
+        Duration age = maxAge != null && maxAge.compareTo(ttl) < 0 ? maxAge : ttl;
+        if (age.isZero() || age.isNegative()) return null;
+
+        String name = fileName(profileUrl);
+        synchronized (this) {
+            if (entries.get(name) == null) return null;
+        }
+        Path file = dir.resolve(name);
+        try {
+            Map<String, Object> record = json.toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            long storedAt = JsonValues.number(record, "storedAt");
+            if (System.currentTimeMillis() - storedAt > age.toMillis()
+                    || !profileUrl.equals(JsonValues.str(record, "url"))) {
+                return null;
+            }
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : JsonValues.map(record, "fields").entrySet()) {
+                if (e.getValue() != null) fields.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+            }
+            // пустые записи прежних версий — как промах, профиль загрузится заново
+            if (!CardSnapshots.hasDetails(fields)) {
+                return null;
+            }
+            // Время изменения файла — время последнего чтения, по нему порядок LRU после перезапуска
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return fields;
+        } catch (NoSuchFileException e) {
+            forget(name);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // повреждённую запись перезапишет следующая загрузка профиля
+            return null;
+        }
+    }
+
+    public void put(String profileUrl, Map<String, String> fields) throws IOException {
+        if (profileUrl == null || profileUrl.isEmpty()) return;
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("url", profileUrl);
+        record.put("storedAt", System.currentTimeMillis());
+        record.put("fields", fields);
+        StringBuilder content = new StringBuilder();
+        try (JsonOutput output = json.newOutput(content)) {
+            output.setPrettyPrint(false).write(record);
+        }
+
+        String name = fileName(profileUrl);
+        Path file = dir.resolve(name);
+        Path temp = dir.resolve(name + "." + Thread.currentThread().getId() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        long size = Files.size(file);
+
+        synchronized (this) {
+            Long previous = entries.put(name, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            evict(name);
+        }
+    }
+
+    // Удаляет давно не читавшиеся записи, пока кэш больше лимита (только что записанную не трогаем)
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+            } catch (IOException ignore) {
+                // файл занят — удалится при следующем вытеснении
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private synchronized void forget(String name) {
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+    }
+
+    public synchronized String describe() {
+        return "💾 Кэш профилей: " + entries.size() + " записей, "
+                + String.format(Locale.ROOT, "%.1f из %d МБ", totalBytes / 1048576.0, maxBytes / 1048576)
+                + ", срок годности " + ttl.toDays() + " дн.";
+    }
+
+    private static String fileName(String profileUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(profileUrl.getBytes(StandardCharsets.UTF_8))) + EXTENSION;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long number(String property, long defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -17,4 +17,14 @@ public interface ProgressListener {
 
     // Новый метод для выбора региона
     String showRegionSelectionDialog(List<String> regions);
+
+    // Решение регулятора потоков карточек: текущий лимит, верхняя граница и причина
+    default void onConcurrencyChanged(int current, int ceiling, String reason) {
+    }
+
+    // Выбор нескольких регионов для пакетного режима; по умолчанию — один регион из обычного диалога
+    default List<String> showRegionsSelectionDialog(List<String> regions) {
+        String region = showRegionSelectionDialog(regions);
+        return region == null ? null : List.of(region);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package com.parser;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий на процесс ограничитель частоты запросов к dom.gosuslugi.ru (token bucket).
+ * Все сессии, шарды, регионы пакетного режима и HTTP-движки берут разрешение здесь перед каждой навигацией,
+ * поэтому суммарная нагрузка не растёт с числом браузеров. Отдельные корзины для списка и карточек;
+ * частота (запросов в секунду) задаётся системными свойствами gosuslugi.rate.list и gosuslugi.rate.detail,
+ * 0 — без ограничения.
+ */
+public final class RateGovernor {
+    public static final String LIST_PROPERTY = "gosuslugi.rate.list";
+    public static final String DETAIL_PROPERTY = "gosuslugi.rate.detail";
+    private static final double DEFAULT_LIST_RATE = 2.0;
+    private static final double DEFAULT_DETAIL_RATE = 4.0;
+
+    public enum Stage {
+        LIST("список"),
+        DETAIL("карточки");
+
+        private final String title;
+
+        Stage(String title) {
+            this.title = title;
+        }
+    }
+
+    private static final RateGovernor SHARED = new RateGovernor(
+            rate(LIST_PROPERTY, DEFAULT_LIST_RATE), rate(DETAIL_PROPERTY, DEFAULT_DETAIL_RATE));
+
+    private final Map<Stage, TokenBucket> buckets = new EnumMap<>(Stage.class);
+
+    private RateGovernor(double listRate, double detailRate) {
+        buckets.put(Stage.LIST, new TokenBucket(listRate));
+        buckets.put(Stage.DETAIL, new TokenBucket(detailRate));
+    }
+
+    public static RateGovernor shared() {
+        return SHARED;
+    }
+
+    /**
+     * Ждёт разрешения на запрос этапа stage; время ожидания добавляется в delays (если передан).
+     */
+    public void acquire(Stage stage, Delays delays) throws InterruptedException {
+        long waitNanos = buckets.get(stage).reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        if (delays != null) {
+            delays.add(stage, waitNanos);
+        }
+    }
+
+    public String describe() {
+        return "🚦 Лимит запросов: список " + buckets.get(Stage.LIST).describe()
+                + ", карточки " + buckets.get(Stage.DETAIL).describe();
+    }
+
+    private static double rate(String property, double defaultRate) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) return defaultRate;
+        try {
+            return Math.max(0, Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            return defaultRate;
+        }
+    }
+
+    /**
+     * Сколько времени этапы одной сессии простояли в ожидании лимита. Парсер выводит и обнуляет после каждой страницы.
+     */
+    public static class Delays {
+        private final Map<Stage, AtomicLong> waited = new EnumMap<>(Stage.class);
+        private final Map<Stage, AtomicLong> requests = new EnumMap<>(Stage.class);
+
+        public Delays() {
+            for (Stage stage : Stage.values()) {
+                waited.put(stage, new AtomicLong());
+                requests.put(stage, new AtomicLong());
+            }
+        }
+
+        void add(Stage stage, long waitNanos) {
+            waited.get(stage).addAndGet(Math.max(0, waitNanos));
+            requests.get(stage).incrementAndGet();
+        }
+
+        // Сводка с момента прошлого вызова; null, если запросов не было
+        public String drainReport() {
+            StringBuilder report = new StringBuilder();
+            for (Stage stage : Stage.values()) {
+                long count = requests.get(stage).getAndSet(0);
+                long nanos = waited.get(stage).getAndSet(0);
+                if (count == 0) continue;
+                report.append(report.length() == 0 ? "" : ", ")
+                        .append(stage.title).append(" ")
+                        .append(String.format(Locale.ROOT, "%.1f с", nanos / 1e9))
+                        .append(" (").append(count).append(" запросов)");
+            }
+            return report.length() == 0 ? null : "🚦 Ожидание лимита запросов: " + report;
+        }
+    }
+
+    /**
+     * Корзина с резервированием: разрешение выдаётся сразу, если есть токен, иначе вызывающий получает
+     * время ожидания своей очереди (токены уходят в минус), так что ждущие обслуживаются по порядку.
+     * Ёмкость — одна секунда запросов, не меньше одного.
+     */
+    private static class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        TokenBucket(double ratePerSecond) {
+            this.ratePerNano = ratePerSecond / 1e9;
+            this.capacity = Math.max(1, ratePerSecond);
+            this.tokens = capacity;
+        }
+
+        synchronized long reserve() {
+            if (ratePerNano <= 0) return 0;
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / ratePerNano);
+        }
+
+        String describe() {
+            return ratePerNano <= 0 ? "без ограничения" : String.format(Locale.ROOT, "%.1f/с", ratePerNano * 1e9);
+        }
+    }
+}
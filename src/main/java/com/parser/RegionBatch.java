@@ -0,0 +1,85 @@
+package com.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пакетный обход нескольких регионов за один запуск: на каждый регион — отдельный запуск парсера
+ * (своя сессия, свой лог с префиксом региона и свой выходной файл), одновременно не больше concurrency.
+ * Общий прогресс — число завершённых регионов.
+ */
+public final class RegionBatch {
+
+    public interface RegionRunner {
+        void run(String region, ProgressListener regionListener) throws Exception;
+    }
+
+    public record Result(List<String> succeeded, List<String> failed) {
+        public String summary() {
+            return "Регионов обработано: " + succeeded.size() + " из " + (succeeded.size() + failed.size())
+                    + (failed.isEmpty() ? "" : ", с ошибкой: " + failed);
+        }
+    }
+
+    private RegionBatch() {
+    }
+
+    public static Result run(List<String> regions, int concurrency, ProgressListener listener,
+                             AtomicBoolean cancelRequested, RegionRunner runner) throws InterruptedException {
+        List<String> succeeded = Collections.synchronizedList(new ArrayList<>());
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger done = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, regions.size())));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (String region : regions) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    if (cancelRequested.get()) {
+                        return;
+                    }
+                    ShardListener regionListener = new ShardListener(listener, region);
+                    log(listener, "🗺️ Старт региона: " + region);
+                    try {
+                        runner.run(region, regionListener);
+                    } catch (Exception e) {
+                        regionListener.onFinished(false, e.getMessage());
+                    }
+                    (regionListener.isSuccess() ? succeeded : failed).add(region);
+                    log(listener, "🗺️ Регион " + region + ": " + regionListener.getMessage());
+                    if (listener != null) listener.onPageProgress(done.incrementAndGet(), regions.size());
+                }, pool));
+            }
+
+            // Запуски регионов сами видят флаг отмены и сохраняют прогресс — дожидаемся всех
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            while (true) {
+                try {
+                    all.get(1, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException ignore) {
+                } catch (ExecutionException e) {
+                    log(listener, "❌ Ошибка пакетного обхода: " + e.getCause());
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new Result(new ArrayList<>(succeeded), new ArrayList<>(failed));
+    }
+
+    private static void log(ProgressListener listener, String line) {
+        if (listener != null) listener.log(line);
+        System.out.println(line);
+    }
+}
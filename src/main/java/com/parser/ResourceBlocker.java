@@ -0,0 +1,138 @@
+package com.parser;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Блокировка тяжёлых и ненужных парсеру ресурсов через CDP Network.setBlockedURLs:
+ * запрос отменяется в браузере и не уходит в сеть. Собственные скрипты приложения не трогаем.
+ * Набор категорий задаётся системным свойством gosuslugi.block (например "images,fonts,analytics",
+ * "none" — ничего не блокировать).
+ */
+public final class ResourceBlocker {
+    public static final String PROPERTY = "gosuslugi.block";
+
+    public enum Category {
+        IMAGES("*.png*", "*.jpg*", "*.jpeg*", "*.gif*", "*.svg*", "*.webp*", "*.ico*", "*.bmp*"),
+        FONTS("*.woff*", "*.ttf*", "*.otf*", "*.eot*"),
+        // Стили по умолчанию не блокируем: innerText и isDisplayed в DOM-разборе зависят от CSS
+        STYLES("*.css*"),
+        // Счётчики и сторонние скрипты (метрика, аналитика, виджеты)
+        ANALYTICS("*mc.yandex.ru*", "*yandex.ru/metrika*", "*google-analytics.com*", "*googletagmanager.com*",
+                "*doubleclick.net*", "*top-fwz1.mail.ru*", "*counter.yadro.ru*", "*vk.com/rtrg*");
+
+        private final List<String> patterns;
+
+        Category(String... patterns) {
+            this.patterns = List.of(patterns);
+        }
+    }
+
+    /**
+     * Счётчики по всем браузерам запуска: заблокированные запросы по типам ресурсов
+     * и реально загруженные байты. Парсер выводит и обнуляет их после каждой страницы.
+     */
+    public static class Stats {
+        private final Map<String, AtomicLong> blocked = new ConcurrentHashMap<>();
+        private final AtomicLong transferredBytes = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+
+        void onBlocked(String resourceType) {
+            blocked.computeIfAbsent(resourceType, k -> new AtomicLong()).incrementAndGet();
+        }
+
+        void onFinished(long bytes) {
+            requests.incrementAndGet();
+            transferredBytes.addAndGet(Math.max(0, bytes));
+        }
+
+        // Сводка с момента прошлого вызова
+        public String drainReport() {
+            Map<String, Long> byType = new TreeMap<>();
+            long total = 0;
+            for (Map.Entry<String, AtomicLong> e : blocked.entrySet()) {
+                long n = e.getValue().getAndSet(0);
+                if (n > 0) {
+                    byType.put(e.getKey(), n);
+                    total += n;
+                }
+            }
+            long bytes = transferredBytes.getAndSet(0);
+            long loaded = requests.getAndSet(0);
+            return "🛡️ Заблокировано запросов: " + total + (byType.isEmpty() ? "" : " " + byType)
+                    + ", загружено: " + loaded + " запросов / " + String.format(Locale.ROOT, "%.1f", bytes / 1024.0 / 1024.0) + " МБ";
+        }
+    }
+
+    private ResourceBlocker() {
+    }
+
+    // Категории из системного свойства; по умолчанию всё, кроме стилей
+    public static Set<Category> configuredCategories() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.isBlank()) {
+            return EnumSet.of(Category.IMAGES, Category.FONTS, Category.ANALYTICS);
+        }
+        Set<Category> result = EnumSet.noneOf(Category.class);
+        for (String name : value.split(",")) {
+            String n = name.trim().toUpperCase(Locale.ROOT);
+            if (n.isEmpty() || n.equals("NONE")) continue;
+            try {
+                result.add(Category.valueOf(n));
+            } catch (IllegalArgumentException ignore) {
+                // неизвестную категорию пропускаем
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Включает блокировку в браузере и подписывает его на общие счётчики.
+     * Бросает исключение, если у драйвера нет DevTools.
+     */
+    public static void apply(WebDriver driver, Set<Category> categories, Stats stats) {
+        if (categories.isEmpty()) return;
+        if (!(driver instanceof HasDevTools)) {
+            throw new IllegalArgumentException("Драйвер не поддерживает DevTools: " + driver.getClass().getSimpleName());
+        }
+        List<String> patterns = new ArrayList<>();
+        for (Category category : categories) {
+            patterns.addAll(category.patterns);
+        }
+
+        DevTools devTools = ((HasDevTools) driver).getDevTools();
+        devTools.createSessionIfThereIsNotOne();
+        devTools.send(new Command<>("Network.enable", Map.of()));
+        devTools.send(new Command<>("Network.setBlockedURLs", Map.of("urls", patterns)));
+        devTools.addListener(event("Network.loadingFailed"), params -> {
+            if (params.get("blockedReason") != null) {
+                stats.onBlocked(String.valueOf(params.getOrDefault("type", "Other")));
+            }
+        });
+        devTools.addListener(event("Network.loadingFinished"),
+                params -> stats.onFinished(JsonValues.number(params, "encodedDataLength")));
+    }
+
+    public static String describe(Set<Category> categories) {
+        return categories.isEmpty() ? "нет" : Arrays.toString(categories.toArray()).toLowerCase(Locale.ROOT);
+    }
+
+    private static Event<Map<String, Object>> event(String method) {
+        return new Event<>(method, input -> input.read(Json.MAP_TYPE));
+    }
+}
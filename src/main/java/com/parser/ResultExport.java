@@ -0,0 +1,244 @@
+package com.parser;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Этап выгрузки: журнал строк ({@link RowJournal}) превращается в итоговый xlsx рядом с ним.
+ * Парсеры вызывают его в конце запуска; без браузера его можно запустить отдельно:
+ * <pre>
+ * java -cp ... com.parser.ResultExport ["Управляющие компании Москва 2025.rows" ...]
+ * </pre>
+ * (без аргументов — все журналы *.rows в текущем каталоге).
+ */
+public final class ResultExport {
+    public static final String EXTENSION = ".rows";
+    public static final String COMPANIES = "companies";
+    public static final String HOUSES = "houses";
+
+    private static final String COMPANIES_SHEET = "Компании";
+    private static final String[] COMPANIES_HEADERS = {
+            "Наименование", "Вид организации", "Фактический адрес", "Сайт", "Телефон",
+            "Email", "Информация о приёме", "Часы приёма", "Перерыв", "Примечание",
+            "Руководитель", "Ссылка на карточку"
+    };
+    private static final String HOUSES_SHEET = "Дома";
+    private static final String[] HOUSES_HEADERS = {
+            "Адрес", "Год ввода в эксплуатацию", "Количество этажей",
+            "Управляющая организация", "Количество помещений\n(жилых/нежилых)", "Ссылка на карточку"
+    };
+    // Год в конце имени файла ("Управляющие компании Москва 2025")
+    private static final Pattern YEAR_SUFFIX = Pattern.compile("^(.*) (\\d{4})$");
+
+    private ResultExport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> journals = new ArrayList<>();
+        if (args.length > 0) {
+            for (String arg : args) journals.add(Path.of(arg));
+        } else {
+            try (Stream<Path> files = Files.list(Path.of("."))) {
+                files.filter(f -> f.getFileName().toString().endsWith(EXTENSION)).sorted().forEach(journals::add);
+            }
+        }
+        if (journals.isEmpty()) {
+            System.out.println("Журналы строк (*" + EXTENSION + ") не найдены");
+            return;
+        }
+        for (Path journal : journals) {
+            String summary = export(journal);
+            System.out.println(summary != null ? summary : "⚠️ Журнал пуст: " + journal.getFileName());
+        }
+    }
+
+    /**
+     * Выгружает журнал в xlsx с тем же именем; вид записей берётся из заголовка журнала.
+     * Возвращает итог для журнала событий, null — выгружать нечего.
+     */
+    public static String export(Path journal) throws IOException {
+        String kind = RowJournal.kind(journal);
+        if (COMPANIES.equals(kind)) {
+            return export(journal, companiesWriter(xlsxFor(journal)), ResultExport::companyFromRecord, Company::getName);
+        }
+        if (HOUSES.equals(kind)) {
+            return export(journal, housesWriter(xlsxFor(journal)), ResultExport::houseFromRecord, House::getAddress);
+        }
+        throw new IOException("Не журнал строк результата: " + journal);
+    }
+
+    public static Path journalFor(String outputBaseName) {
+        return Path.of(outputBaseName + EXTENSION);
+    }
+
+    // Два прохода по журналу: сначала последняя запись каждого ключа (повтор карточки или страницы
+    // после продолжения пишется позже), затем в книгу уходят только они
+    private static <T> String export(Path journal, StreamingWorkbookWriter<T> writer,
+                                     Function<List<String>, T> decode, Function<T, String> key) throws IOException {
+        Map<String, Integer> last = new HashMap<>();
+        int[] position = {0};
+        List<T> batch = new ArrayList<>();
+        try {
+            RowJournal.read(journal, record -> last.put(keyOf(key.apply(decode.apply(record))), position[0]++));
+            position[0] = 0;
+            RowJournal.read(journal, record -> {
+                T item = decode.apply(record);
+                if (last.get(keyOf(key.apply(item))) != position[0]++) return;
+                batch.add(item);
+                if (batch.size() >= StreamingWorkbookWriter.ROW_WINDOW) {
+                    writer.append(batch);
+                    batch.clear();
+                }
+            });
+            writer.append(batch);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        return writer.finish();
+    }
+
+    private static String keyOf(String key) {
+        return key == null ? "" : key.trim();
+    }
+
+    private static Path xlsxFor(Path journal) {
+        String name = journal.getFileName().toString();
+        return journal.resolveSibling(name.substring(0, name.length() - EXTENSION.length()) + ".xlsx");
+    }
+
+    // Прежние строки берём из файла этого года, если его нет — из прошлогоднего
+    private static Path baseFor(Path xlsx) {
+        if (Files.exists(xlsx)) return xlsx;
+        String name = xlsx.getFileName().toString().replaceFirst("\\.xlsx$", "");
+        Matcher m = YEAR_SUFFIX.matcher(name);
+        return m.matches() ? xlsx.resolveSibling(m.group(1) + " " + (Integer.parseInt(m.group(2)) - 1) + ".xlsx") : null;
+    }
+
+    private static StreamingWorkbookWriter<Company> companiesWriter(Path xlsx) {
+        return new StreamingWorkbookWriter<>(xlsx, baseFor(xlsx), COMPANIES_SHEET, COMPANIES_HEADERS,
+                Company::getName, ResultExport::createCompanyRow);
+    }
+
+    private static StreamingWorkbookWriter<House> housesWriter(Path xlsx) {
+        return new StreamingWorkbookWriter<>(xlsx, baseFor(xlsx), HOUSES_SHEET, HOUSES_HEADERS,
+                House::getAddress, ResultExport::createHouseRow);
+    }
+
+    // Запись журнала: поля в порядке колонок, ссылка на карточку — последним полем
+    public static List<String> companyRecord(Company company) {
+        return Arrays.asList(company.getName(), company.getType(), company.getAddress(), company.getWebsite(),
+                company.getPhone(), company.getEmail(), company.getReceptionInfo(), company.getReceptionHours(),
+                company.getBreakTimes(), company.getNotes(), company.getDirectorInfo(), company.getProfileUrl());
+    }
+
+    private static Company companyFromRecord(List<String> record) {
+        Company company = new Company();
+        company.setName(field(record, 0));
+        company.setType(field(record, 1));
+        company.setAddress(field(record, 2));
+        company.setWebsite(field(record, 3));
+        company.setPhone(field(record, 4));
+        company.setEmail(field(record, 5));
+        company.setReceptionInfo(field(record, 6));
+        company.setReceptionHours(field(record, 7));
+        company.setBreakTimes(field(record, 8));
+        company.setNotes(field(record, 9));
+        company.setDirectorInfo(field(record, 10));
+        company.setProfileUrl(field(record, 11));
+        return company;
+    }
+
+    public static List<String> houseRecord(House house) {
+        return Arrays.asList(house.getAddress(), house.getCommissioningYear(), house.getFloorsCount(),
+                house.getManagementOrganization(), house.getPremisesCount(), house.getProfileUrl());
+    }
+
+    private static House houseFromRecord(List<String> record) {
+        House house = new House();
+        house.setAddress(field(record, 0));
+        house.setCommissioningYear(field(record, 1));
+        house.setFloorsCount(field(record, 2));
+        house.setManagementOrganization(field(record, 3));
+        house.setPremisesCount(field(record, 4));
+        house.setProfileUrl(field(record, 5));
+        return house;
+    }
+
+    private static String field(List<String> record, int index) {
+        return index < record.size() ? record.get(index) : null;
+    }
+
+    private static void createCompanyRow(Row row, Company company, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
+        Cell nameCell = row.createCell(0);
+        nameCell.setCellValue(company.getName() != null ? company.getName() : "");
+        nameCell.setCellStyle(defaultStyle);
+
+        setCellValue(row, 1, company.getType(), defaultStyle);
+        setCellValue(row, 2, company.getAddress(), defaultStyle);
+        setCellValue(row, 3, company.getWebsite(), defaultStyle);
+        setCellValue(row, 4, company.getPhone(), defaultStyle);
+        setCellValue(row, 5, company.getEmail(), defaultStyle);
+        setCellValue(row, 6, company.getReceptionInfo(), defaultStyle);
+        setCellValue(row, 7, company.getReceptionHours(), defaultStyle);
+        setCellValue(row, 8, company.getBreakTimes(), defaultStyle);
+        setCellValue(row, 9, company.getNotes(), defaultStyle);
+        setCellValue(row, 10, company.getDirectorInfo(), defaultStyle);
+
+        setLinkCell(row, 11, company.getProfileUrl(), defaultStyle, linkStyle, createHelper);
+    }
+
+    private static void createHouseRow(Row row, House house, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper) {
+        setCellValue(row, 0, house.getAddress(), defaultStyle);
+        setCellValue(row, 1, house.getCommissioningYear(), defaultStyle);
+        setCellValue(row, 2, house.getFloorsCount(), defaultStyle);
+        setCellValue(row, 3, house.getManagementOrganization(), defaultStyle);
+        setCellValue(row, 4, house.getPremisesCount(), defaultStyle);
+
+        setLinkCell(row, 5, house.getProfileUrl(), defaultStyle, linkStyle, createHelper);
+    }
+
+    private static void setLinkCell(Row row, int cellIndex, String url, CellStyle defaultStyle, CellStyle linkStyle,
+                                    CreationHelper createHelper) {
+        Cell linkCell = row.getCell(cellIndex);
+        if (linkCell == null) {
+            linkCell = row.createCell(cellIndex);
+        }
+        if (url != null && !url.isEmpty()) {
+            linkCell.setCellValue("Открыть карточку");
+            Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
+            link.setAddress(url);
+            linkCell.setHyperlink(link);
+            linkCell.setCellStyle(linkStyle);
+        } else {
+            linkCell.setCellValue("Нет ссылки");
+            linkCell.setCellStyle(defaultStyle);
+        }
+    }
+
+    private static void setCellValue(Row row, int cellIndex, String value, CellStyle style) {
+        Cell cell = row.getCell(cellIndex);
+        if (cell == null) {
+            cell = row.createCell(cellIndex);
+        }
+        cell.setCellValue(value != null ? value : "");
+        cell.setCellStyle(style);
+    }
+}
@@ -0,0 +1,223 @@
+package com.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Журнал строк результата (то же имя, что у выходного файла + ".rows"): готовые записи Company/House
+ * дописываются сюда по мере сохранения страниц, а Excel собирается из журнала один раз ({@link ResultExport}).
+ * Формат двоичный с префиксами длины:
+ * <pre>
+ * заголовок:  int MAGIC, UTF вид записей ("companies" / "houses")
+ * запись:     int число полей, для каждого поля int длина в байтах UTF-8 (-1 — null) и байты
+ * </pre>
+ * Каждая дозапись сбрасывается на диск; оборванная при аварийном завершении последняя запись
+ * при открытии отрезается.
+ */
+public class RowJournal implements AutoCloseable {
+    private static final int MAGIC = 0x47525731; // "GRW1"
+    // Сессии-шарды и потоки карточек одного региона пишут в один журнал
+    private static final Object LOCK = new Object();
+
+    private final Path path;
+    private final String kind;
+    private final FileChannel channel;
+    private int count;
+
+    private RowJournal(Path path, String kind) throws IOException {
+        this.path = path;
+        this.kind = kind;
+        synchronized (LOCK) {
+            long valid = Files.exists(path) ? scan() : 0;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(valid);
+            channel.position(valid);
+            if (valid == 0) {
+                writeHeader();
+            }
+        }
+    }
+
+    public static RowJournal open(Path path, String kind) throws IOException {
+        return new RowJournal(path, kind);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Записей в журнале (включая записанные прошлыми запусками)
+    public int count() {
+        return count;
+    }
+
+    // Пачка записей — одна дозапись и один сброс на диск
+    public void append(Collection<List<String>> records) throws IOException {
+        if (records.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (List<String> record : records) {
+                out.writeInt(record.size());
+                for (String field : record) {
+                    if (field == null) {
+                        out.writeInt(-1);
+                    } else {
+                        byte[] value = field.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(value.length);
+                        out.write(value);
+                    }
+                }
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        synchronized (LOCK) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            count += records.size();
+        }
+    }
+
+    // Новый запуск: прежние записи отбрасываются
+    public void reset() throws IOException {
+        synchronized (LOCK) {
+            channel.truncate(0);
+            channel.position(0);
+            writeHeader();
+            count = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Вид записей журнала по заголовку; null — файл не является журналом строк.
+     */
+    public static String kind(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return in.readInt() == MAGIC ? in.readUTF() : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Читает записи по порядку; оборванный хвост пропускается.
+     */
+    public static void read(Path path, Consumer<List<String>> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Не журнал строк: " + path);
+            }
+            in.readUTF();
+            while (true) {
+                List<String> record = readRecord(in);
+                if (record == null) return;
+                consumer.accept(record);
+            }
+        } catch (EOFException e) {
+            // пустой файл без заголовка
+        }
+    }
+
+    // null — конец файла или оборванная запись
+    private static List<String> readRecord(DataInputStream in) throws IOException {
+        try {
+            int fields = in.readInt();
+            if (fields < 0) return null;
+            List<String> record = new ArrayList<>(fields);
+            for (int i = 0; i < fields; i++) {
+                int length = in.readInt();
+                if (length < 0) {
+                    record.add(null);
+                } else {
+                    byte[] value = in.readNBytes(length);
+                    if (value.length < length) return null;
+                    record.add(new String(value, StandardCharsets.UTF_8));
+                }
+            }
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Длина целой части файла (заголовок и полные записи); 0 — файл пустой или чужой
+    private long scan() throws IOException {
+        try (InputStream raw = Files.newInputStream(path);
+             CountingInput counting = new CountingInput(new BufferedInputStream(raw));
+             DataInputStream in = new DataInputStream(counting)) {
+            if (in.readInt() != MAGIC || !kind.equals(in.readUTF())) {
+                return 0;
+            }
+            long valid = counting.position;
+            while (readRecord(in) != null) {
+                valid = counting.position;
+                count++;
+            }
+            return valid;
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(kind);
+        }
+        channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+        channel.force(false);
+    }
+
+    // Считает прочитанные байты, чтобы знать, где кончается последняя целая запись
+    private static class CountingInput extends FilterInputStream {
+        long position;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+    }
+}
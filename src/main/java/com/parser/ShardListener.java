@@ -0,0 +1,55 @@
+package com.parser;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Слушатель дочерней сессии: лог и статус уходят в общий слушатель с префиксом сессии,
+ * прогресс по страницам считает координатор, итог сессии запоминается для сводки.
+ */
+public class ShardListener implements ProgressListener {
+    private final ProgressListener parent;
+    private final String prefix;
+    @Getter
+    private volatile boolean success;
+    @Getter
+    private volatile String message = "не завершена";
+
+    public ShardListener(ProgressListener parent, String name) {
+        this.parent = parent;
+        this.prefix = "[" + name + "] ";
+    }
+
+    @Override
+    public void onStatus(String text) {
+        if (parent != null) parent.onStatus(prefix + text);
+    }
+
+    @Override
+    public void onPageProgress(int current, int total) {
+        // общий прогресс обновляет координатор по мере сохранения страниц
+    }
+
+    @Override
+    public void log(String line) {
+        if (parent != null) parent.log(prefix + line);
+    }
+
+    @Override
+    public void onConcurrencyChanged(int current, int ceiling, String reason) {
+        if (parent != null) parent.onConcurrencyChanged(current, ceiling, prefix + reason);
+    }
+
+    @Override
+    public void onFinished(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    // Регион выбран координатором, дочерние сессии диалог не показывают
+    @Override
+    public String showRegionSelectionDialog(List<String> regions) {
+        return null;
+    }
+}
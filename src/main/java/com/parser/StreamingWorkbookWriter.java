@@ -0,0 +1,330 @@
+package com.parser;
+
+import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.SheetUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.AttributedString;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Выходной Excel-файл поверх потокового SXSSFWorkbook: в памяти держится только окно
+ * последних ROW_WINDOW строк, остальные уходят во временный файл POI. Строки дописываются
+ * без перечитывания файла ({@link ResultExport} — из журнала строк); книга пишется один раз в {@link #finish()}.
+ * Строки прежнего файла (base — файл этого или прошлого года) переносятся при сборке, кроме тех,
+ * что обновлены в этом запуске (совпадение по ключу — значению первой колонки).
+ * Ширина колонок не подбирается по всем ячейкам в конце (autoSizeColumn меряет каждую шрифтом AWT):
+ * при добавлении строки запоминается самая длинная строка текста колонки, в {@link #finish()} меряется только она.
+ *
+ * @param <T> запись строки (Company, House)
+ */
+public class StreamingWorkbookWriter<T> {
+    public static final int ROW_WINDOW = 100;
+    // Запас ширины колонки после автоподбора (в 1/256 символа)
+    private static final int WIDTH_PADDING = 512;
+    // Наибольшая ширина колонки в Excel — 255 символов
+    private static final int MAX_WIDTH = 255 * 256;
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    /**
+     * Заполняет строку листа записью (ResultExport.createCompanyRow/createHouseRow).
+     */
+    public interface RowWriter<T> {
+        void write(Row row, T item, CellStyle defaultStyle, CellStyle linkStyle, CreationHelper createHelper);
+    }
+
+    private final Path path;
+    private final Path base;
+    private final String sheetName;
+    private final int columns;
+    private final Function<T, String> key;
+    private final RowWriter<T> rowWriter;
+
+    private final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+    private final SXSSFSheet sheet;
+    private final CellStyle defaultStyle;
+    private final CellStyle linkStyle;
+    private final CreationHelper createHelper;
+    // Ключ -> номер строки, записанной в этом запуске
+    private final Map<String, Integer> written = new HashMap<>();
+    // Самая длинная строка текста каждой колонки (в символах) и заголовок — их меряем при сборке
+    private final String[] widest;
+    private final String[] headers;
+    private Font headerFont;
+    private int duplicates;
+    private boolean closed;
+
+    /**
+     * @param path      итоговый файл
+     * @param base      прежний файл, строки которого переносятся (null или несуществующий — без переноса)
+     * @param headers   заголовки колонок
+     * @param key       ключ строки (пустой — запись пропускается)
+     */
+    public StreamingWorkbookWriter(Path path, Path base, String sheetName, String[] headers,
+                                   Function<T, String> key, RowWriter<T> rowWriter) {
+        this.path = path;
+        this.base = base;
+        this.sheetName = sheetName;
+        this.columns = headers.length;
+        this.headers = headers;
+        this.widest = new String[columns];
+        this.key = key;
+        this.rowWriter = rowWriter;
+
+        workbook.setCompressTempFiles(true);
+        sheet = workbook.createSheet(sheetName);
+        defaultStyle = createDefaultStyle(workbook);
+        linkStyle = createLinkStyle(workbook);
+        createHelper = workbook.getCreationHelper();
+        createHeaders(headers);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized int getRowCount() {
+        return written.size();
+    }
+
+    /**
+     * Дописывает строки; запись с уже встречавшимся ключом обновляет строку, пока та в окне, иначе пропускается.
+     * Возвращает число новых строк.
+     */
+    public synchronized int append(List<T> items) {
+        if (closed) throw new IllegalStateException("Файл уже собран: " + path);
+        int added = 0;
+        for (T item : items) {
+            String k = key.apply(item);
+            if (k == null || k.trim().isEmpty()) continue;
+            k = k.trim();
+
+            Integer existing = written.get(k);
+            if (existing != null) {
+                Row row = sheet.getRow(existing);
+                if (row != null) {
+                    rowWriter.write(row, item, defaultStyle, linkStyle, createHelper);
+                    trackWidths(row);
+                } else {
+                    duplicates++;
+                }
+                continue;
+            }
+            int rowIndex = sheet.getLastRowNum() + 1;
+            Row row = sheet.createRow(rowIndex);
+            rowWriter.write(row, item, defaultStyle, linkStyle, createHelper);
+            trackWidths(row);
+            written.put(k, rowIndex);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Сборка: перенос строк прежнего файла, ширина колонок, автофильтр и запись через временный файл,
+     * чтобы сбой во время записи не испортил прежний результат. Возвращает итог для журнала.
+     */
+    public synchronized String finish() throws IOException {
+        if (closed) return null;
+        closed = true;
+        try {
+            int kept = 0;
+            int updated = 0;
+            if (base != null && Files.exists(base)) {
+                int[] counts = copyBaseRows();
+                kept = counts[0];
+                updated = counts[1];
+            }
+            if (sheet.getLastRowNum() < 1) {
+                return null;
+            }
+
+            applyColumnWidths();
+            sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, columns - 1));
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                workbook.write(out);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+
+            int added = written.size() - updated;
+            return "💾 Данные сохранены в файл: " + path.getFileName() + " (добавлено " + added + ", обновлено " + updated
+                    + ", из прежнего файла " + kept + (duplicates > 0 ? ", повторов пропущено " + duplicates : "") + ")";
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+
+    // Сборка не удалась — временные файлы удаляются, прежний результат остаётся как был
+    public synchronized void abort() throws IOException {
+        if (closed) return;
+        closed = true;
+        workbook.close();
+        workbook.dispose();
+    }
+
+    // Строки прежнего файла, не перезаписанные в этом запуске: [перенесено, обновлено]
+    private int[] copyBaseRows() throws IOException {
+        int kept = 0;
+        int updated = 0;
+        DataFormatter formatter = new DataFormatter();
+        try (InputStream in = new FileInputStream(base.toFile()); Workbook previous = new XSSFWorkbook(in)) {
+            Sheet source = previous.getSheet(sheetName);
+            if (source == null) return new int[]{0, 0};
+            for (int i = 1; i <= source.getLastRowNum(); i++) {
+                Row row = source.getRow(i);
+                if (row == null || row.getCell(0) == null) continue;
+                String k = formatter.formatCellValue(row.getCell(0)).trim();
+                if (k.isEmpty()) continue;
+                if (written.containsKey(k)) {
+                    updated++;
+                    continue;
+                }
+                Row copy = sheet.createRow(sheet.getLastRowNum() + 1);
+                copyRow(row, copy, formatter);
+                trackWidths(copy);
+                kept++;
+            }
+        }
+        return new int[]{kept, updated};
+    }
+
+    private void copyRow(Row from, Row to, DataFormatter formatter) {
+        for (int c = 0; c < columns; c++) {
+            Cell source = from.getCell(c);
+            Cell cell = to.createCell(c);
+            cell.setCellValue(source != null ? formatter.formatCellValue(source) : "");
+            if (source != null && source.getHyperlink() != null) {
+                Hyperlink link = createHelper.createHyperlink(HyperlinkType.URL);
+                link.setAddress(source.getHyperlink().getAddress());
+                cell.setHyperlink(link);
+                cell.setCellStyle(linkStyle);
+            } else {
+                cell.setCellStyle(defaultStyle);
+            }
+        }
+    }
+
+    // Запоминает самую длинную строку текста по колонкам: O(число колонок) на строку, без замеров шрифтом
+    private void trackWidths(Row row) {
+        for (int c = 0; c < columns; c++) {
+            Cell cell = row.getCell(c);
+            if (cell == null) continue;
+            String line = longestLine(cell.getStringCellValue());
+            if (widest[c] == null || line.length() > widest[c].length()) {
+                widest[c] = line;
+            }
+        }
+    }
+
+    // Ширина как у autoSizeColumn (замер шрифтом ячейки), но по одной строке данных и заголовку на колонку
+    private void applyColumnWidths() {
+        int charWidth = SheetUtil.getDefaultCharWidth(workbook);
+        Font dataFont = workbook.getFontAt(defaultStyle.getFontIndex());
+        for (int c = 0; c < columns; c++) {
+            double width = textWidth(longestLine(headers[c]), headerFont, charWidth);
+            if (widest[c] != null) {
+                width = Math.max(width, textWidth(widest[c], dataFont, charWidth));
+            }
+            sheet.setColumnWidth(c, Math.min((int) (width * 256) + WIDTH_PADDING, MAX_WIDTH));
+        }
+    }
+
+    // Ширина текста в символах шрифта по умолчанию — тот же расчёт, что у POI при автоподборе (с запасом в символ "0")
+    private static double textWidth(String text, Font font, int charWidth) {
+        AttributedString str = new AttributedString(text + "0");
+        str.addAttribute(TextAttribute.FAMILY, font.getFontName());
+        str.addAttribute(TextAttribute.SIZE, (float) font.getFontHeightInPoints());
+        if (font.getBold()) str.addAttribute(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+        TextLayout layout = new TextLayout(str.getIterator(), FONT_RENDER_CONTEXT);
+        return (layout.getBounds().getX() + layout.getBounds().getWidth()) / charWidth;
+    }
+
+    // Многострочный текст занимает ширину самой длинной строки
+    private static String longestLine(String text) {
+        String longest = "";
+        for (String line : text.split("\n")) {
+            if (line.length() > longest.length()) longest = line;
+        }
+        return longest;
+    }
+
+    private void createHeaders(String[] headers) {
+        CellStyle headerStyle = createHeaderStyle(workbook);
+        headerFont = workbook.getFontAt(headerStyle.getFontIndex());
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    private static CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle headerStyle = workbook.createCellStyle();
+        Font headerFont = workbook.createFont();
+        headerFont.setFontName("Times New Roman");
+        headerFont.setFontHeightInPoints((short) 12);
+        headerFont.setBold(true);
+        headerStyle.setFont(headerFont);
+        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        headerStyle.setWrapText(true);
+        headerStyle.setVerticalAlignment(VerticalAlignment.TOP);
+        return headerStyle;
+    }
+
+    private static CellStyle createDefaultStyle(Workbook workbook) {
+        CellStyle defaultStyle = workbook.createCellStyle();
+        Font defaultFont = workbook.createFont();
+        defaultFont.setFontName("Times New Roman");
+        defaultFont.setFontHeightInPoints((short) 12);
+        defaultStyle.setFont(defaultFont);
+        defaultStyle.setWrapText(true);
+        defaultStyle.setVerticalAlignment(VerticalAlignment.TOP);
+        return defaultStyle;
+    }
+
+    private static CellStyle createLinkStyle(Workbook workbook) {
+        CellStyle linkStyle = workbook.createCellStyle();
+        Font linkFont = workbook.createFont();
+        linkFont.setFontName("Times New Roman");
+        linkFont.setFontHeightInPoints((short) 12);
+        linkFont.setUnderline(Font.U_SINGLE);
+        linkFont.setColor(IndexedColors.BLUE.getIndex());
+        linkStyle.setFont(linkFont);
+        linkStyle.setWrapText(true);
+        linkStyle.setVerticalAlignment(VerticalAlignment.TOP);
+        return linkStyle;
+    }
+}
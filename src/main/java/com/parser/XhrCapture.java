@@ -0,0 +1,172 @@
+package com.parser;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Перехват JSON-ответов реестра в браузере через Chrome DevTools Protocol (домен Network).
+ * Слушаем ответы, чей URL содержит один из маркеров, и после loadingFinished забираем тело
+ * через Network.getResponseBody. Команды и события CDP задаются по имени, без привязки
+ * к версии devtools-модуля Selenium, поэтому работают с любой версией Chrome.
+ */
+public class XhrCapture implements AutoCloseable {
+    private static final Json JSON = new Json();
+    // Сколько последних ответов держим в памяти
+    private static final int MAX_KEPT = 20;
+
+    private final DevTools devTools;
+    private final List<String> urlMarkers;
+    // requestId -> URL подходящих ответов, тело которых ещё не загружено
+    private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+    // Тело забираем отдельным потоком: отправлять команду CDP из обработчика события нельзя
+    private final ExecutorService bodyReader;
+    private final Deque<Response> responses = new ArrayDeque<>();
+    private long seq;
+    private volatile boolean closed;
+
+    public record Response(long seq, String url, Object json) {
+    }
+
+    /**
+     * @param driver     ChromeDriver (или другой драйвер с поддержкой DevTools)
+     * @param urlMarkers части URL запросов, ответы на которые нужно сохранять
+     */
+    public XhrCapture(WebDriver driver, String... urlMarkers) {
+        if (!(driver instanceof HasDevTools)) {
+            throw new IllegalArgumentException("Драйвер не поддерживает DevTools: " + driver.getClass().getSimpleName());
+        }
+        this.urlMarkers = List.of(urlMarkers);
+        this.bodyReader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "xhr-capture");
+            t.setDaemon(true);
+            return t;
+        });
+        this.devTools = ((HasDevTools) driver).getDevTools();
+        devTools.createSessionIfThereIsNotOne();
+        devTools.send(new Command<>("Network.enable", Map.of()));
+        devTools.addListener(event("Network.responseReceived"), this::onResponseReceived);
+        devTools.addListener(event("Network.loadingFinished"), this::onLoadingFinished);
+        devTools.addListener(event("Network.loadingFailed"), params -> inFlight.remove(String.valueOf(params.get("requestId"))));
+    }
+
+    // Путь запроса без query — маркер для URL (PROFILE_PATH содержит "?organizationGuid=")
+    static String pathOf(String pathWithQuery) {
+        int q = pathWithQuery.indexOf('?');
+        return q < 0 ? pathWithQuery : pathWithQuery.substring(0, q);
+    }
+
+    // Значение параметра query в URL или null, если его нет
+    static String queryParam(String url, String name) {
+        int q = url.indexOf('?');
+        if (q < 0) return null;
+        for (String pair : url.substring(q + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) return pair.substring(eq + 1);
+        }
+        return null;
+    }
+
+    // Номер последнего сохранённого ответа: ответы после перехода будут иметь seq больше
+    public synchronized long mark() {
+        return seq;
+    }
+
+    /**
+     * Ждёт ответ с URL, содержащим marker, пришедший после afterSeq, и возвращает самый свежий из таких.
+     * Возвращает null, если за timeout ответа не было.
+     */
+    public Object awaitLatest(String marker, long afterSeq, Duration timeout) throws InterruptedException {
+        return awaitLatest(r -> r.url().contains(marker), afterSeq, timeout);
+    }
+
+    /**
+     * То же с проверкой ответа целиком (например, номера страницы в URL запроса): тела читаются асинхронно,
+     * и ответ на прежний запрос может получить номер больше отметки.
+     */
+    public synchronized Object awaitLatest(Predicate<Response> accept, long afterSeq, Duration timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        while (true) {
+            Iterator<Response> it = responses.descendingIterator();
+            while (it.hasNext()) {
+                Response r = it.next();
+                if (r.seq() <= afterSeq) break;
+                if (accept.test(r)) return r.json();
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0 || closed) {
+                return null;
+            }
+            wait(left);
+        }
+    }
+
+    private void onResponseReceived(Map<String, Object> params) {
+        if (closed) return;
+        String url = JsonValues.str(params, "response.url");
+        long status = JsonValues.number(params, "response.status");
+        if (status / 100 != 2) return;
+        for (String marker : urlMarkers) {
+            if (url.contains(marker)) {
+                inFlight.put(String.valueOf(params.get("requestId")), url);
+                return;
+            }
+        }
+    }
+
+    private void onLoadingFinished(Map<String, Object> params) {
+        String requestId = String.valueOf(params.get("requestId"));
+        String url = inFlight.remove(requestId);
+        if (url == null || closed) return;
+        bodyReader.execute(() -> readBody(requestId, url));
+    }
+
+    private void readBody(String requestId, String url) {
+        try {
+            Map<String, Object> result = devTools.send(new Command<>("Network.getResponseBody",
+                    Map.of("requestId", requestId), input -> input.read(Json.MAP_TYPE)));
+            String body = String.valueOf(result.get("body"));
+            if (Boolean.TRUE.equals(result.get("base64Encoded"))) {
+                body = new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+            }
+            Object json = body.isBlank() ? null : JSON.toType(body, Json.OBJECT_TYPE);
+            synchronized (this) {
+                responses.addLast(new Response(++seq, url, json));
+                while (responses.size() > MAX_KEPT) responses.removeFirst();
+                notifyAll();
+            }
+        } catch (Exception ignore) {
+            // тело могло быть уже выгружено из буфера браузера — парсер перейдёт к разбору DOM
+        }
+    }
+
+    private static Event<Map<String, Object>> event(String method) {
+        return new Event<>(method, input -> input.read(Json.MAP_TYPE));
+    }
+
+    @Override
+    public void close() {
+        // Слушатели DevTools общие для драйвера, поэтому просто перестаём принимать события
+        closed = true;
+        bodyReader.shutdownNow();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.parser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Локальный сервер с записанными ответами бэкенда для HTTP-движков (-Dgosuslugi.api.url=http://localhost:8089).
+ * Ответ ищется по последнему сегменту пути запроса S в каталоге fixtures и его подкаталогах:
+ * сначала S/&lt;значение параметра запроса&gt;.json (например, orgByGuid/&lt;guid&gt;.json), затем S.json; иначе 404.
+ * Запуск вручную: java -cp ... com.parser.FixtureServer [порт] [каталог].
+ */
+public class FixtureServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8089;
+
+    private final Path root;
+    private final HttpServer server;
+    // Запросы в порядке поступления: путь с параметрами, для проверки, что движок спрашивал то, что нужно
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    public FixtureServer(Path root, int port) throws IOException {
+        this.root = root;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path root = Path.of(args.length > 1 ? args[1] : "fixtures");
+        FixtureServer server = new FixtureServer(root, port);
+        System.out.println("🧪 Записанные ответы из " + root.toAbsolutePath() + ": " + server.getUrl());
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        String path = exchange.getRequestURI().getPath();
+        requests.add(path + (query != null ? "?" + query : ""));
+        exchange.getRequestBody().readAllBytes();
+
+        Path file = find(path.substring(path.lastIndexOf('/') + 1), query);
+        byte[] body = file != null ? Files.readAllBytes(file) : new byte[0];
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(file != null ? 200 : 404, body.length > 0 ? body.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Path find(String segment, String query) throws IOException {
+        List<String> names = new ArrayList<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                String value = eq >= 0 ? URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8) : "";
+                // значение становится именем файла — за пределы каталога не выходим
+                if (!value.isEmpty() && !value.contains("/") && !value.contains("\\") && !value.contains("..")) {
+                    names.add(segment + "/" + value + ".json");
+                }
+            }
+        }
+        names.add(segment + ".json");
+        for (String name : names) {
+            try (Stream<Path> dirs = Stream.concat(Stream.of(root), Files.list(root).filter(Files::isDirectory))) {
+                Path found = dirs.map(dir -> dir.resolve(name)).filter(Files::isRegularFile).findFirst().orElse(null);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
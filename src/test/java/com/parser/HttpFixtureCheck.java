@@ -0,0 +1,123 @@
+package com.parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Проверка HTTP-движков на записанных ответах (каталог fixtures) без сети и браузера: клиент и движки ходят
+ * на адрес из -Dgosuslugi.api.url, как в парсерах; без него поднимается свой {@link FixtureServer}.
+ * Запуск: java -cp target/classes:target/test-classes:... com.parser.HttpFixtureCheck [каталог с fixtures].
+ * Расхождения — исключением со списком полей.
+ */
+public class HttpFixtureCheck {
+    private static final String ORG_GUID = "5f0c1a2e-7b3d-4c9a-9e21-0d6f8b4a1c37";
+    private static final String BARE_ORG_GUID = "9a7e3b10-2c4d-4f6e-8a1b-3c5d7e9f0a2b";
+    private static final String HOUSE_GUID = "0b8f2d64-1e3a-4c57-9d26-7a4e5f1b3c80";
+
+    private final List<String> mismatches = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path root = Path.of(args.length > 0 ? args[0] : "fixtures");
+        FixtureServer server = null;
+        if (System.getProperty("gosuslugi.api.url") == null) {
+            server = new FixtureServer(root, 0);
+            System.setProperty("gosuslugi.api.url", server.getUrl());
+        }
+        String apiUrl = System.getProperty("gosuslugi.api.url");
+        System.out.println("🧪 Записанные ответы: " + apiUrl);
+
+        HttpFixtureCheck check = new HttpFixtureCheck();
+        try {
+            check.organizations(apiUrl);
+            check.houses(apiUrl);
+            if (server != null) {
+                check.requested(server.getRequests());
+            }
+        } finally {
+            if (server != null) server.close();
+        }
+        if (!check.mismatches.isEmpty()) {
+            check.mismatches.forEach(m -> System.out.println("❌ " + m));
+            throw new IllegalStateException("Расхождений с записанными ответами: " + check.mismatches.size());
+        }
+        System.out.println("✅ Регионы, searchByOrg, orgByGuid и searchByAddress разбираются как ожидается");
+    }
+
+    private void organizations(String apiUrl) throws IOException, InterruptedException {
+        try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiUrl, OrganizationsHttpEngine.STATE_GUID, 4)) {
+            Map<String, String> regions = client.fetchRegions();
+            expect("регионов", 2, regions.size());
+            expect("код региона", "16", regions.get("Республика Татарстан"));
+
+            OrganizationsHttpEngine http = new OrganizationsHttpEngine(client, System.out::println);
+            OrganizationsHttpEngine.Page page = http.search("16", 1, 10);
+            expect("всего организаций", 3L, page.total());
+            // Запись без названия отбрасывается
+            expect("организаций на странице", 2, page.companies().size());
+            if (page.companies().size() != 2) return;
+
+            Company company = page.companies().get(0);
+            Company bare = page.companies().get(1);
+            // Ссылка ведёт на сайт, а не на адрес бэкенда
+            expect("ссылка", GosuslugiHttpClient.SITE_URL + "/#!/organization?organizationGuid=" + ORG_GUID, company.getProfileUrl());
+            expect("название", "ОБЩЕСТВО С ОГРАНИЧЕННОЙ ОТВЕТСТВЕННОСТЬЮ \"УПРАВЛЯЮЩАЯ КОМПАНИЯ \"ЖИЛСЕРВИС\"", company.getName());
+            expect("роли", "Управляющая организация" + System.lineSeparator() + "Исполнитель коммунальных услуг", company.getType());
+            expect("адрес", "420012, Респ. Татарстан, г. Казань, ул. Пушкина, д. 12", company.getAddress());
+            expect("телефон", "+7 (843) 200-10-20", company.getPhone());
+            expect("сайт", "http://zhilservis-kzn.ru", company.getWebsite());
+
+            // Профиля второй организации среди записанных ответов нет: сервер отвечает 404
+            Map<Company, DetailFailure> failures = http.enrich(page.companies(), new AtomicBoolean(false));
+            expect("не загружено профилей", 1, failures.size());
+            expect("класс ошибки профиля", DetailFailure.OTHER, failures.get(bare));
+            expect("детали без профиля", false, CompanyMapper.hasDetails(bare));
+
+            expect("email", "info@zhilservis-kzn.ru", company.getEmail());
+            expect("руководитель", "Иванов Пётр Сергеевич\nГенеральный директор", company.getDirectorInfo());
+            expect("приём граждан", "Диспетчер\nг. Казань, ул. Пушкина, д. 12, оф. 3\n+7 (843) 200-10-21, +7 (843) 200-10-22",
+                    company.getReceptionInfo());
+            expect("часы приёма", "Понедельник: 09:00—18:00", company.getReceptionHours());
+            expect("перерывы", "Понедельник: 13:00—14:00", company.getBreakTimes());
+            expect("примечание", "Аварийная служба круглосуточно\nПриём по предварительной записи", company.getNotes());
+        }
+    }
+
+    private void houses(String apiUrl) throws IOException, InterruptedException {
+        try (GosuslugiHttpClient client = new GosuslugiHttpClient(apiUrl, HousesHttpEngine.STATE_GUID, 4)) {
+            HousesHttpEngine.Page page = new HousesHttpEngine(client).search("16", 1, 10);
+            expect("всего домов", 1L, page.total());
+            expect("домов на странице", 1, page.houses().size());
+            if (page.houses().isEmpty()) return;
+
+            House house = page.houses().get(0);
+            expect("ссылка на дом", GosuslugiHttpClient.SITE_URL + "/#!/house-view?guid=" + HOUSE_GUID + "&typeCode=1", house.getProfileUrl());
+            expect("адрес дома", "Респ. Татарстан, г. Казань, ул. Пушкина, д. 12", house.getAddress());
+            expect("год ввода", "1974", house.getCommissioningYear());
+            expect("этажей", "9", house.getFloorsCount());
+            expect("управляющая организация", "ОБЩЕСТВО С ОГРАНИЧЕННОЙ ОТВЕТСТВЕННОСТЬЮ \"УПРАВЛЯЮЩАЯ КОМПАНИЯ \"ЖИЛСЕРВИС\"",
+                    house.getManagementOrganization());
+            expect("помещений", "108/2", house.getPremisesCount());
+        }
+    }
+
+    // Движки спрашивают нужные страницы и профили
+    private void requested(List<String> requests) {
+        expect("запрос поиска организаций", true,
+                requests.contains(OrganizationsHttpEngine.SEARCH_PATH + "?pageIndex=1&elementsPerPage=10"));
+        expect("запрос профиля", true, requests.contains(OrganizationsHttpEngine.PROFILE_PATH + ORG_GUID));
+        expect("запрос профиля без ответа", true, requests.contains(OrganizationsHttpEngine.PROFILE_PATH + BARE_ORG_GUID));
+        expect("запрос поиска домов", true,
+                requests.contains(HousesHttpEngine.SEARCH_PATH + "?pageIndex=1&elementsPerPage=10"));
+    }
+
+    private void expect(String field, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            mismatches.add(field + ": ожидалось [" + expected + "], получено [" + actual + "]");
+        }
+    }
+}